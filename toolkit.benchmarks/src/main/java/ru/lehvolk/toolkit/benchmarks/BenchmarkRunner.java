@@ -0,0 +1,30 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs toolkit benchmarks with GC profiler, so allocation rate is reported together with throughput.<br>
+ * Usage: <code>java -jar target/benchmarks.jar [JMH options]</code>, e.g. <code>CryptoBenchmark -p keyType=AES</code>
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * @param args - JMH command line options
+	 * @throws Exception if benchmarks can't be run
+	 */
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(BenchmarkRunner.class.getPackage().getName() + ".*")
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,60 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.CipherMode;
+import ru.lehvolk.toolkit.security.Crypto;
+import ru.lehvolk.toolkit.security.KeyType;
+import ru.lehvolk.toolkit.security.RawKeyPackage;
+
+/**
+ * Benchmarks of AES encryption in plain and authenticated cipher modes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CipherModeBenchmark {
+
+	@Param({"CBC", "GCM"})
+	private CipherMode cipherMode;
+
+	@Param({"64", "1024", "65536"})
+	private int size;
+
+	private RawKeyPackage key;
+	private byte[] data;
+	private byte[] encrypted;
+
+	@Setup
+	public void setup() throws Exception {
+		RawKeyPackage generated = Crypto.generateKey(KeyType.AES).toRawPackage();
+		key = new RawKeyPackage(generated.getKey(), generated.getIv(), KeyType.AES, cipherMode);
+		data = Payloads.random(size);
+		encrypted = Crypto.encrypt(data, key);
+	}
+
+	@Benchmark
+	public byte[] encrypt() throws Exception {
+		return Crypto.encrypt(data, key);
+	}
+
+	@Benchmark
+	public byte[] decrypt() throws Exception {
+		return Crypto.decrypt(encrypted, key);
+	}
+}
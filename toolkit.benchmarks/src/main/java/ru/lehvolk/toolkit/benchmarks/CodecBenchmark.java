@@ -0,0 +1,87 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.Crypto;
+
+/**
+ * Benchmarks of Base64 and hex codecs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodecBenchmark {
+
+	@Param({"20", "1024"})
+	private int size;
+
+	private byte[] data;
+	private String base64;
+	private String hex;
+	private char[] chars;
+	private byte[] bytes;
+
+	@Setup
+	public void setup() throws Exception {
+		data = Payloads.random(size);
+		base64 = Crypto.toBase64(data);
+		hex = Crypto.toHex(data);
+		chars = new char[Math.max(Crypto.base64Length(size), size * 2)];
+		bytes = new byte[size];
+	}
+
+	@Benchmark
+	public String toBase64() {
+		return Crypto.toBase64(data);
+	}
+
+	@Benchmark
+	public byte[] fromBase64() {
+		return Crypto.fromBase64(base64);
+	}
+
+	@Benchmark
+	public String toHex() {
+		return Crypto.toHex(data);
+	}
+
+	@Benchmark
+	public byte[] fromHex() throws Exception {
+		return Crypto.fromHex(hex);
+	}
+
+	@Benchmark
+	public int toBase64IntoArray() {
+		return Crypto.toBase64(data, 0, data.length, chars, 0);
+	}
+
+	@Benchmark
+	public int fromBase64IntoArray() throws Exception {
+		return Crypto.fromBase64(base64, bytes, 0);
+	}
+
+	@Benchmark
+	public int toHexIntoArray() {
+		return Crypto.toHex(data, 0, data.length, chars, 0);
+	}
+
+	@Benchmark
+	public int fromHexIntoArray() throws Exception {
+		return Crypto.fromHex(hex, bytes, 0);
+	}
+}
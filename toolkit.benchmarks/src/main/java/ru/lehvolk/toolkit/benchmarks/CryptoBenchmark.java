@@ -0,0 +1,80 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.Crypto;
+import ru.lehvolk.toolkit.security.KeyType;
+import ru.lehvolk.toolkit.security.RawKeyPackage;
+
+/**
+ * Benchmarks of in-memory encryption/decryption
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CryptoBenchmark {
+
+	@Param({"AES", "TDES"})
+	private KeyType keyType;
+
+	@Param({"64", "1024", "65536"})
+	private int size;
+
+	private RawKeyPackage key;
+	private byte[] data;
+	private byte[] encrypted;
+	private byte[] out;
+	private ByteBuffer dataBuffer;
+	private ByteBuffer outBuffer;
+
+	@Setup
+	public void setup() throws Exception {
+		key = Crypto.generateKey(keyType).toRawPackage();
+		data = Payloads.random(size);
+		encrypted = Crypto.encrypt(data, key);
+		out = new byte[Crypto.outputSize(key, Cipher.ENCRYPT_MODE, size)];
+		dataBuffer = ByteBuffer.allocateDirect(size);
+		dataBuffer.put(data).flip();
+		outBuffer = ByteBuffer.allocateDirect(out.length);
+	}
+
+	@Benchmark
+	public byte[] encrypt() throws Exception {
+		return Crypto.encrypt(data, key);
+	}
+
+	@Benchmark
+	public byte[] decrypt() throws Exception {
+		return Crypto.decrypt(encrypted, key);
+	}
+
+	@Benchmark
+	public int encryptIntoArray() throws Exception {
+		return Crypto.encrypt(data, 0, data.length, out, 0, key);
+	}
+
+	@Benchmark
+	public int encryptDirectBuffer() throws Exception {
+		dataBuffer.rewind();
+		outBuffer.clear();
+		return Crypto.encrypt(dataBuffer, outBuffer, key);
+	}
+}
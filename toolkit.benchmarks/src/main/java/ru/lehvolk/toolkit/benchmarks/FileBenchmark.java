@@ -0,0 +1,79 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.Crypto;
+import ru.lehvolk.toolkit.security.FileProcessing;
+import ru.lehvolk.toolkit.security.KeyType;
+import ru.lehvolk.toolkit.security.RawKeyPackage;
+
+/**
+ * Benchmarks of stream and file encryption
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileBenchmark {
+
+	@Param({"1048576", "67108864"})
+	private int size;
+
+	private RawKeyPackage key;
+	private byte[] data;
+	private File source;
+	private File dest;
+
+	@Setup
+	public void setup() throws Exception {
+		key = Crypto.generateKey(KeyType.AES).toRawPackage();
+		data = Payloads.random(size);
+		source = Payloads.randomFile(size);
+		dest = Payloads.tempFile();
+	}
+
+	@TearDown
+	public void tearDown() {
+		source.delete();
+		dest.delete();
+	}
+
+	@Benchmark
+	public int processStream() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + 16);
+		Crypto.processStream(new ByteArrayInputStream(data), out, key, Cipher.ENCRYPT_MODE);
+		return out.size();
+	}
+
+	@Benchmark
+	public long encryptFile() throws Exception {
+		Crypto.encryptFile(source, dest, key);
+		return dest.length();
+	}
+
+	@Benchmark
+	public long encryptFileMapped() throws Exception {
+		Crypto.encryptFile(source, dest, key, FileProcessing.MAPPED);
+		return dest.length();
+	}
+}
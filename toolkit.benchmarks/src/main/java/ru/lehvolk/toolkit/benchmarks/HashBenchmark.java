@@ -0,0 +1,62 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.Crypto;
+
+/**
+ * Benchmarks of hash helpers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashBenchmark {
+
+	@Param({"64", "65536"})
+	private int size;
+
+	private String text;
+	private byte[] data;
+
+	@Setup
+	public void setup() {
+		data = Payloads.random(size);
+		text = Crypto.toHex(data).substring(0, size);
+	}
+
+	@Benchmark
+	public String md5() {
+		return Crypto.toMD5(text);
+	}
+
+	@Benchmark
+	public String sha1() {
+		return Crypto.toSHA1(text);
+	}
+
+	@Benchmark
+	public String sha256() {
+		return Crypto.toSHA256(text);
+	}
+
+	@Benchmark
+	public String sha256Stream() throws Exception {
+		return Crypto.toSHA256(new ByteArrayInputStream(data));
+	}
+}
@@ -0,0 +1,44 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.Crypto;
+import ru.lehvolk.toolkit.security.KeyType;
+import ru.lehvolk.toolkit.security.RawKeyPackage;
+import ru.lehvolk.toolkit.security.SecretKeyPackage;
+
+/**
+ * Benchmarks of key generation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KeyGenerationBenchmark {
+
+	@Param({"AES", "TDES", "DDES"})
+	private KeyType keyType;
+
+	@Benchmark
+	public SecretKeyPackage generateKey() throws Exception {
+		return Crypto.generateKey(keyType);
+	}
+
+	@Benchmark
+	public RawKeyPackage generateRawKey() throws Exception {
+		return Crypto.generateRawKey(keyType);
+	}
+}
@@ -0,0 +1,74 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.Crypto;
+import ru.lehvolk.toolkit.security.KeyType;
+import ru.lehvolk.toolkit.security.RawKeyPackage;
+
+/**
+ * Benchmarks of MAC generation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MacBenchmark {
+
+	private static final int MAC_LEN = 8;
+
+	@Param({"64", "1024"})
+	private int size;
+
+	private RawKeyPackage key;
+	private byte[] data;
+	private byte[] mac;
+	private String hmacKey;
+	private byte[] hmacKeyBytes;
+	private String text;
+
+	@Setup
+	public void setup() throws Exception {
+		key = Crypto.generateKey(KeyType.TDES).toRawPackage();
+		data = Payloads.random(size);
+		mac = new byte[MAC_LEN];
+		hmacKey = "benchmark-hmac-key";
+		hmacKeyBytes = hmacKey.getBytes("UTF-8");
+		text = Crypto.toHex(data).substring(0, size);
+	}
+
+	@Benchmark
+	public byte[] createMAC() throws Exception {
+		return Crypto.createMAC(key, data, data.length, MAC_LEN);
+	}
+
+	@Benchmark
+	public byte[] createMACIntoArray() throws Exception {
+		Crypto.createMAC(key, data, 0, data.length, mac, 0, MAC_LEN);
+		return mac;
+	}
+
+	@Benchmark
+	public byte[] hmacSign() throws Exception {
+		return Crypto.hmacSign(hmacKey, text);
+	}
+
+	@Benchmark
+	public byte[] hmacSignBytes() throws Exception {
+		return Crypto.hmacSign(hmacKeyBytes, data);
+	}
+}
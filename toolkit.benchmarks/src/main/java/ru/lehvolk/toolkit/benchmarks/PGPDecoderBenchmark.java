@@ -0,0 +1,59 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.PGPDecoder;
+import ru.lehvolk.toolkit.security.PGPEncoder;
+import ru.lehvolk.toolkit.security.PGPKeyPackage;
+
+/**
+ * Benchmarks of PGP decryption with signature verification
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PGPDecoderBenchmark {
+
+	@Param({"1024", "1048576"})
+	private int size;
+
+	private PGPKeyPackage keys;
+	private PGPDecoder decoder;
+	private byte[] encrypted;
+
+	@Setup
+	public void setup() throws Exception {
+		PGPKeys rings = PGPKeys.generate();
+		keys = PGPKeyPackage.read(new ByteArrayInputStream(rings.getPublicRing()),
+				new ByteArrayInputStream(rings.getSecretRing()), PGPKeys.PASSWORD);
+		decoder = new PGPDecoder();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1024);
+		new PGPEncoder().encrypt(out, new ByteArrayInputStream(Payloads.random(size)), "data.bin", keys);
+		encrypted = out.toByteArray();
+	}
+
+	@Benchmark
+	public long decryptAndVerify() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+		return decoder.decrypt(out, new ByteArrayInputStream(encrypted), keys.getSignaturePrivateKey(),
+				keys.getSignatureKey().getPublicKey()).getBytes();
+	}
+}
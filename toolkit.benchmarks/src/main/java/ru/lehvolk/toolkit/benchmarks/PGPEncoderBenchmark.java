@@ -0,0 +1,82 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ru.lehvolk.toolkit.security.PGPEncoder;
+import ru.lehvolk.toolkit.security.PGPKeyPackage;
+
+/**
+ * Benchmarks of PGP encryption with and without signing
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PGPEncoderBenchmark {
+
+	@Param({"1024", "1048576"})
+	private int size;
+
+	private PGPKeys keys;
+	private PGPKeyPackage prepared;
+	private PGPEncoder encoder;
+	private PGPEncoder adaptiveEncoder;
+	private byte[] data;
+
+	@Setup
+	public void setup() throws Exception {
+		keys = PGPKeys.generate();
+		prepared = PGPKeyPackage.read(new ByteArrayInputStream(keys.getPublicRing()),
+				new ByteArrayInputStream(keys.getSecretRing()), PGPKeys.PASSWORD);
+		encoder = new PGPEncoder();
+		adaptiveEncoder = new PGPEncoder();
+		adaptiveEncoder.setAdaptiveCompression(true);
+		data = Payloads.random(size);
+	}
+
+	@Benchmark
+	public int encrypt() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1024);
+		encoder.encrypt(out, new ByteArrayInputStream(data), "data.bin", new ByteArrayInputStream(keys.getPublicRing()),
+				null, null);
+		return out.size();
+	}
+
+	@Benchmark
+	public int encryptAndSign() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1024);
+		encoder.encrypt(out, new ByteArrayInputStream(data), "data.bin", new ByteArrayInputStream(keys.getPublicRing()),
+				new ByteArrayInputStream(keys.getSecretRing()), PGPKeys.PASSWORD);
+		return out.size();
+	}
+
+	@Benchmark
+	public int encryptAndSignPrepared() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1024);
+		encoder.encrypt(out, new ByteArrayInputStream(data), "data.bin", prepared);
+		return out.size();
+	}
+
+	@Benchmark
+	public int encryptAndSignAdaptive() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1024);
+		adaptiveEncoder.encrypt(out, new ByteArrayInputStream(data), "data.bin", prepared);
+		return out.size();
+	}
+}
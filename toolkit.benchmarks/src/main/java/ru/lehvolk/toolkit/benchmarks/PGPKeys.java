@@ -0,0 +1,65 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Date;
+
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPKeyRingGenerator;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSignature;
+
+/**
+ * Generated PGP key rings for benchmarks
+ */
+final class PGPKeys {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	/** password of generated secret key */
+	static final String PASSWORD = "benchmark";
+
+	private final byte[] publicRing;
+	private final byte[] secretRing;
+
+	private PGPKeys(byte[] publicRing, byte[] secretRing) {
+		this.publicRing = publicRing;
+		this.secretRing = secretRing;
+	}
+
+	/**
+	 * @return key rings of single RSA key usable for signing and encryption
+	 * @throws Exception if keys can't be generated
+	 */
+	static PGPKeys generate() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", "BC");
+		generator.initialize(2048);
+		PGPKeyPair keyPair = new PGPKeyPair(PGPPublicKey.RSA_GENERAL, generator.generateKeyPair(), new Date());
+
+		PGPKeyRingGenerator ringGenerator = new PGPKeyRingGenerator(PGPSignature.POSITIVE_CERTIFICATION, keyPair,
+				"benchmark", SymmetricKeyAlgorithmTags.AES_256, PASSWORD.toCharArray(), true, null, null,
+				new SecureRandom(), "BC");
+
+		return new PGPKeys(ringGenerator.generatePublicKeyRing().getEncoded(),
+				ringGenerator.generateSecretKeyRing().getEncoded());
+	}
+
+	/**
+	 * @return encoded public key ring
+	 */
+	byte[] getPublicRing() {
+		return publicRing;
+	}
+
+	/**
+	 * @return encoded secret key ring
+	 */
+	byte[] getSecretRing() {
+		return secretRing;
+	}
+}
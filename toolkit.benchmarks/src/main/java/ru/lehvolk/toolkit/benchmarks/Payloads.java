@@ -0,0 +1,56 @@
+package ru.lehvolk.toolkit.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generator of benchmark payloads
+ */
+final class Payloads {
+
+	private static final long SEED = 0x70616C6F6164L;
+
+	private Payloads() {
+	}
+
+	/**
+	 * @param size - size of payload
+	 * @return reproducible pseudo-random bytes
+	 */
+	static byte[] random(int size) {
+		byte[] data = new byte[size];
+		new Random(SEED).nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * @param size - size of file
+	 * @return temporary file filled with pseudo-random bytes, deleted on exit
+	 * @throws IOException if file can't be written
+	 */
+	static File randomFile(long size) throws IOException {
+		File file = tempFile();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			byte[] chunk = random(1 << 16);
+			for (long written = 0; written < size; written += chunk.length) {
+				out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * @return empty temporary file, deleted on exit
+	 * @throws IOException if file can't be created
+	 */
+	static File tempFile() throws IOException {
+		File file = File.createTempFile("toolkit-bench", ".bin");
+		file.deleteOnExit();
+		return file;
+	}
+}
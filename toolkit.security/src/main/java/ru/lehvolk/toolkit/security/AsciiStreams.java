@@ -0,0 +1,95 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Adapters between character and byte streams for ASCII-only content (e.g. Base64)
+ */
+final class AsciiStreams {
+
+	private static final int BUFFER_SIZE = 1 << 13;
+
+	private AsciiStreams() {
+	}
+
+	/**
+	 * Writes bytes to {@link Writer} as ASCII characters
+	 */
+	static final class WriterOutputStream extends OutputStream {
+
+		private final Writer writer;
+		private final char[] buf = new char[BUFFER_SIZE];
+
+		WriterOutputStream(Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			writer.write(b & 0xFF);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int count = Math.min(len, buf.length);
+				for (int i = 0; i < count; i++) {
+					buf[i] = (char) (b[off + i] & 0xFF);
+				}
+				writer.write(buf, 0, count);
+				off += count;
+				len -= count;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Reads ASCII characters of {@link Reader} as bytes
+	 */
+	static final class ReaderInputStream extends InputStream {
+
+		private final Reader reader;
+		private final char[] buf = new char[BUFFER_SIZE];
+
+		ReaderInputStream(Reader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int c = reader.read();
+			return c < 0 ? -1 : c & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			int count = reader.read(buf, 0, Math.min(len, buf.length));
+			for (int i = 0; i < count; i++) {
+				b[off + i] = (byte) buf[i];
+			}
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
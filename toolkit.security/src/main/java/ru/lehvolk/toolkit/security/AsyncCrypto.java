@@ -0,0 +1,293 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous facade for {@link Crypto} and {@link PGPEncoder} operations.<br>
+ * Operations are executed on dedicated executor, count of pending operations is limited: if limit is reached new
+ * operation is rejected with {@link RejectedExecutionException}, so callers can apply backpressure. Any
+ * {@link ExecutorService} may be supplied.
+ */
+public class AsyncCrypto {
+
+	/**
+	 * Receives result of asynchronous operation
+	 * @param <T> type of result
+	 */
+	public static interface Callback<T> {
+
+		/**
+		 * @param result - result of operation
+		 */
+		public void completed(T result);
+
+		/**
+		 * @param error - error of operation
+		 */
+		public void failed(CryptoException error);
+	}
+
+	/**
+	 * Future of asynchronous operation allowing to register completion callbacks
+	 * @param <T> type of result
+	 */
+	public static class CryptoFuture<T> extends FutureTask<T> {
+
+		private final Semaphore permits;
+		private List<Callback<? super T>> callbacks = new ArrayList<Callback<? super T>>();
+
+		CryptoFuture(Callable<T> callable, Semaphore permits) {
+			super(callable);
+			this.permits = permits;
+		}
+
+		/**
+		 * Registers callback, it is called in thread completed the operation or immediately if operation is already
+		 * completed. Runtime exceptions of callbacks called on completion are ignored.
+		 * @param callback - {@link Callback}
+		 */
+		public void addCallback(Callback<? super T> callback) {
+			synchronized (this) {
+				if (callbacks != null) {
+					callbacks.add(callback);
+					return;
+				}
+			}
+			notify(callback);
+		}
+
+		@Override
+		protected void done() {
+			permits.release();
+			List<Callback<? super T>> registered;
+			synchronized (this) {
+				registered = callbacks;
+				callbacks = null;
+			}
+			for (Callback<? super T> callback : registered) {
+				try {
+					notify(callback);
+				} catch (RuntimeException e) {
+					// failure of one callback must not prevent notification of others
+				}
+			}
+		}
+
+		private void notify(Callback<? super T> callback) {
+			T result;
+			try {
+				result = get();
+			} catch (ExecutionException e) {
+				callback.failed(e.getCause() instanceof CryptoException ? (CryptoException) e.getCause()
+						: new CryptoException("Operation failed", e.getCause()));
+				return;
+			} catch (CancellationException e) {
+				callback.failed(new CryptoException("Operation cancelled", e));
+				return;
+			} catch (InterruptedException e) {
+				// unreachable, future is done
+				Thread.currentThread().interrupt();
+				return;
+			}
+			callback.completed(result);
+		}
+	}
+
+	/**
+	 * Creates daemon threads with distinguishable names
+	 */
+	private static class CryptoThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger poolNumber = new AtomicInteger();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+		private final String prefix = "crypto-async-" + poolNumber.incrementAndGet() + "-";
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	private final ExecutorService executor;
+	private final Semaphore permits;
+
+	/**
+	 * Creates facade with own fixed pool of daemon threads
+	 * @param threads - count of threads
+	 * @param maxPending - maximal count of submitted but not completed operations
+	 */
+	public AsyncCrypto(int threads, int maxPending) {
+		this(Executors.newFixedThreadPool(threads, new CryptoThreadFactory()), maxPending);
+	}
+
+	/**
+	 * Creates facade over given executor
+	 * @param executor - {@link ExecutorService} for operations
+	 * @param maxPending - maximal count of submitted but not completed operations
+	 */
+	public AsyncCrypto(ExecutorService executor, int maxPending) {
+		if (executor == null || maxPending <= 0) {
+			throw new IllegalArgumentException("Executor and positive pending limit are mandatory");
+		}
+		this.executor = executor;
+		this.permits = new Semaphore(maxPending);
+	}
+
+	/**
+	 * @see Crypto#encrypt(byte[], RawKeyPackage)
+	 * @param data - array for encrypt
+	 * @param key - secret key package
+	 * @return future of encrypted bytes
+	 */
+	public CryptoFuture<byte[]> encrypt(final byte[] data, final RawKeyPackage key) {
+		return submit(new Callable<byte[]>() {
+
+			@Override
+			public byte[] call() throws Exception {
+				return Crypto.encrypt(data, key);
+			}
+		});
+	}
+
+	/**
+	 * @see Crypto#decrypt(byte[], RawKeyPackage)
+	 * @param encrypted - bytes of encrypted data
+	 * @param key - secret key
+	 * @return future of original bytes
+	 */
+	public CryptoFuture<byte[]> decrypt(final byte[] encrypted, final RawKeyPackage key) {
+		return submit(new Callable<byte[]>() {
+
+			@Override
+			public byte[] call() throws Exception {
+				return Crypto.decrypt(encrypted, key);
+			}
+		});
+	}
+
+	/**
+	 * @see Crypto#encryptFile(File, File, RawKeyPackage, FileProcessing)
+	 * @param source - File with clear content
+	 * @param dest - File for storing encrypted content
+	 * @param key - secret key
+	 * @param processing - {@link FileProcessing} used for reading and writing files
+	 * @return future of operation completion
+	 */
+	public CryptoFuture<Void> encryptFile(final File source, final File dest, final RawKeyPackage key,
+			final FileProcessing processing) {
+		return submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				Crypto.encryptFile(source, dest, key, processing);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @see Crypto#decryptFile(File, File, RawKeyPackage, FileProcessing)
+	 * @param source - File with encrypted content
+	 * @param dest - File for storing clear content
+	 * @param key - secret key
+	 * @param processing - {@link FileProcessing} used for reading and writing files
+	 * @return future of operation completion
+	 */
+	public CryptoFuture<Void> decryptFile(final File source, final File dest, final RawKeyPackage key,
+			final FileProcessing processing) {
+		return submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				Crypto.decryptFile(source, dest, key, processing);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @see Crypto#createMAC(RawKeyPackage, byte[], int, int)
+	 * @param key - {@link RawKeyPackage}
+	 * @param data - data to be signed
+	 * @param signedLen - portion size of data to sign
+	 * @param macLen - size of MAC
+	 * @return future of MAC bytes
+	 */
+	public CryptoFuture<byte[]> createMAC(final RawKeyPackage key, final byte[] data, final int signedLen,
+			final int macLen) {
+		return submit(new Callable<byte[]>() {
+
+			@Override
+			public byte[] call() throws Exception {
+				return Crypto.createMAC(key, data, signedLen, macLen);
+			}
+		});
+	}
+
+	/**
+	 * @see PGPEncoder#encrypt(OutputStream, InputStream, String, InputStream, InputStream, String)
+	 * @param encoder - configured {@link PGPEncoder}, must not be reconfigured while operation is in progress
+	 * @param out - {@link OutputStream} where encrypted data will be passed
+	 * @param data - data to be encrypted {@link InputStream}
+	 * @param fileName - name under witch data will be encrypted
+	 * @param pubKeyStream - public key to encrypt {@link InputStream}
+	 * @param privKeyStream - private key for signing
+	 * @param pass - password for private key
+	 * @return future of operation completion
+	 */
+	public CryptoFuture<Void> encryptPGP(final PGPEncoder encoder, final OutputStream out, final InputStream data,
+			final String fileName, final InputStream pubKeyStream, final InputStream privKeyStream, final String pass) {
+		return submit(new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				encoder.encrypt(out, data, fileName, pubKeyStream, privKeyStream, pass);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * @return count of operations which can be submitted without rejection
+	 */
+	public int getAvailableSlots() {
+		return permits.availablePermits();
+	}
+
+	/**
+	 * Shutdowns executor, already submitted operations are completed
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	private <T> CryptoFuture<T> submit(Callable<T> task) {
+		if (!permits.tryAcquire()) {
+			throw new RejectedExecutionException("Too many pending crypto operations");
+		}
+		CryptoFuture<T> future = new CryptoFuture<T>(task, permits);
+		try {
+			executor.execute(future);
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			throw e;
+		}
+		return future;
+	}
+}
@@ -0,0 +1,31 @@
+package ru.lehvolk.toolkit.security;
+
+/**
+ * Read-only "process" key shared by callers of {@link ProcessKeyCache}, key material is returned as copies, so a
+ * caller can't corrupt key of others. Ciphers are initialized with cached {@link #getKeySpec()}.
+ */
+final class CachedProcessKey extends RawKeyPackage {
+
+	/**
+	 * @param source - {@link RawKeyPackage} not shared with anyone else
+	 */
+	CachedProcessKey(RawKeyPackage source) {
+		super(source.getKey(), source.getIv(), source.getType(), source.getMode());
+	}
+
+	/**
+	 * @return copy of the iv
+	 */
+	@Override
+	public byte[] getIv() {
+		return super.getIv().clone();
+	}
+
+	/**
+	 * @return copy of the key
+	 */
+	@Override
+	public byte[] getKey() {
+		return super.getKey().clone();
+	}
+}
@@ -0,0 +1,101 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Buffered stream writing to channel.<br>
+ * Large writes bypass the buffer. The first failure is kept, so it can be checked by callers which close the stream
+ * quietly.
+ */
+final class ChannelOutputStream extends OutputStream {
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private IOException failure;
+
+	/**
+	 * @param channel - channel to write to, closed with the stream
+	 * @param bufferSize - size of buffer
+	 */
+	ChannelOutputStream(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		buffer = ByteBuffer.allocate(bufferSize);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (!buffer.hasRemaining()) {
+			flushBuffer();
+		}
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len > buffer.remaining()) {
+			flushBuffer();
+		}
+		if (len >= buffer.capacity()) {
+			writeFully(ByteBuffer.wrap(b, off, len));
+		} else {
+			buffer.put(b, off, len);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!channel.isOpen()) {
+			return;
+		}
+		try {
+			flushBuffer();
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * @return the first failure of writing, null if all data was written
+	 */
+	IOException getFailure() {
+		return failure;
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		try {
+			writeFully(buffer);
+		} finally {
+			buffer.clear();
+		}
+	}
+
+	private void writeFully(ByteBuffer src) throws IOException {
+		try {
+			while (src.hasRemaining()) {
+				channel.write(src);
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+	}
+
+	private void fail(IOException e) throws IOException {
+		if (failure == null) {
+			failure = e;
+		}
+		throw e;
+	}
+}
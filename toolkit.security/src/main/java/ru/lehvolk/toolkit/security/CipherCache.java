@@ -0,0 +1,236 @@
+package ru.lehvolk.toolkit.security;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Per-thread cache of initialized {@link Cipher} instances.<br>
+ * Ciphers are kept per transformation in a small set of slots, each slot remembers the key package (by identity) and
+ * mode it was initialized with. Acquiring a cipher for the same key and mode returns it as is, otherwise the least
+ * recently used slot is re-initialized, so provider lookup happens only once per slot.<br>
+ * Ciphers of {@link CipherMode#GCM} key packages need fresh nonce for every operation, so they are never matched
+ * and are returned not initialized, caller initializes them with {@link #init(Slot, RawKeyPackage, int, byte[])}.<br>
+ * Key packages are matched by reference, therefore they must not be modified after the first use.
+ */
+final class CipherCache {
+
+	/**
+	 * Cached cipher with the parameters it was initialized with
+	 */
+	static final class Slot {
+
+		private Cipher cipher;
+		private RawKeyPackage key;
+		// package the cipher was initialized with, also kept for GCM ciphers which are never matched
+		private RawKeyPackage initializedWith;
+		private int mode;
+		private long lastUsed;
+		private boolean busy;
+
+		/**
+		 * @return the cipher
+		 */
+		Cipher getCipher() {
+			return cipher;
+		}
+	}
+
+	private static final int SLOTS_PER_TRANSFORMATION = 4;
+
+	private static final ThreadLocal<Map<String, Slot[]>> CACHE = new ThreadLocal<Map<String, Slot[]>>() {
+
+		@Override
+		protected Map<String, Slot[]> initialValue() {
+			return new HashMap<String, Slot[]>();
+		}
+	};
+
+	private static final ThreadLocal<long[]> CLOCK = new ThreadLocal<long[]>() {
+
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	private CipherCache() {
+	}
+
+	/**
+	 * Takes cipher initialized with given key and mode ({@link CipherMode#GCM} cipher is not initialized). Acquired
+	 * cipher must be returned with {@link #release(Slot)} after successful operation or dropped with
+	 * {@link #discard(Slot)} on error.
+	 * @param key - {@link RawKeyPackage}
+	 * @param mode - mode: Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
+	 * @return slot holding initialized cipher
+	 * @throws CryptoException if cipher can't be created or initialized or key package is destroyed
+	 */
+	static Slot acquire(RawKeyPackage key, int mode) throws CryptoException {
+		if (key instanceof DirectKeyPackage && ((DirectKeyPackage) key).isDestroyed()) {
+			throw new CryptoException("Key package is destroyed");
+		}
+		String transformation = transformation(key);
+		Map<String, Slot[]> cache = CACHE.get();
+		Slot[] slots = cache.get(transformation);
+		if (slots == null) {
+			slots = new Slot[SLOTS_PER_TRANSFORMATION];
+			cache.put(transformation, slots);
+		}
+
+		Slot candidate = null;
+		for (int i = 0; i < slots.length; i++) {
+			Slot slot = slots[i];
+			if (slot == null) {
+				slot = new Slot();
+				slots[i] = slot;
+			}
+			if (slot.busy) {
+				continue;
+			}
+			if (slot.key == key && slot.mode == mode) {
+				slot.busy = true;
+				return slot;
+			}
+			if (candidate == null || slot.lastUsed < candidate.lastUsed) {
+				candidate = slot;
+			}
+		}
+
+		if (candidate == null) {
+			// all slots are in use by enclosing operations of this thread
+			candidate = new Slot();
+		}
+		if (key.getMode() == CipherMode.GCM) {
+			create(candidate, transformation);
+		} else {
+			init(candidate, transformation, key, mode);
+		}
+		candidate.busy = true;
+		return candidate;
+	}
+
+	/**
+	 * Returns cipher to the cache after successful operation
+	 * @param slot - acquired slot
+	 */
+	static void release(Slot slot) {
+		long[] clock = CLOCK.get();
+		slot.lastUsed = ++clock[0];
+		slot.busy = false;
+	}
+
+	/**
+	 * Returns cipher to the cache after failed operation, cipher will be re-initialized on next use
+	 * @param slot - acquired slot
+	 */
+	static void discard(Slot slot) {
+		slot.key = null;
+		slot.lastUsed = 0;
+		slot.busy = false;
+	}
+
+	/**
+	 * Drops all ciphers cached by current thread
+	 */
+	static void clear() {
+		CACHE.remove();
+		CLOCK.remove();
+	}
+
+	/**
+	 * Drops ciphers of current thread initialized with given key package, so their key schedules are not retained
+	 * @param key - {@link RawKeyPackage}
+	 */
+	static void forget(RawKeyPackage key) {
+		for (Slot[] slots : CACHE.get().values()) {
+			for (int i = 0; i < slots.length; i++) {
+				if (slots[i] != null && !slots[i].busy && slots[i].initializedWith == key) {
+					slots[i] = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Initializes cipher of acquired slot with given nonce, used for {@link CipherMode#GCM} key packages
+	 * @param slot - acquired slot
+	 * @param key - {@link RawKeyPackage}
+	 * @param mode - mode: Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
+	 * @param nonce - nonce of operation, {@link CipherMode#getNonceSize()} bytes
+	 * @throws CryptoException if cipher can't be initialized
+	 */
+	static void init(Slot slot, RawKeyPackage key, int mode, byte[] nonce) throws CryptoException {
+		slot.key = null;
+		slot.initializedWith = key;
+		try {
+			slot.cipher.init(mode, key.getKeySpec(), gcmParameters(slot.cipher, nonce));
+		} catch (Exception e) {
+			throw new CryptoException("Error creating cipher", e);
+		}
+	}
+
+	/**
+	 * @param key - {@link RawKeyPackage}
+	 * @return cipher transformation used for given key package
+	 */
+	static String transformation(RawKeyPackage key) {
+		return key.getType().getAlias() + "/" + key.getMode().getTransformation();
+	}
+
+	/**
+	 * Creates cipher, GCM transformations fall back to BouncyCastle on JVMs without platform implementation
+	 * @param transformation - cipher transformation
+	 * @return new cipher
+	 * @throws Exception if transformation is not supported
+	 */
+	static Cipher newCipher(String transformation) throws Exception {
+		try {
+			// platform implementation is intrinsified on modern JVMs
+			return Cipher.getInstance(transformation);
+		} catch (NoSuchAlgorithmException e) {
+			return Cipher.getInstance(transformation, "BC");
+		}
+	}
+
+	/**
+	 * @param cipher - GCM cipher
+	 * @param iv - nonce
+	 * @return parameters of GCM cipher with 128-bit tag in form expected by its provider
+	 */
+	static AlgorithmParameterSpec gcmParameters(Cipher cipher, byte[] iv) {
+		if ("BC".equals(cipher.getProvider().getName())) {
+			return new IvParameterSpec(iv);
+		}
+		return new GCMParameterSpec(CipherMode.GCM.getTagSize() * 8, iv);
+	}
+
+	private static void create(Slot slot, String transformation) throws CryptoException {
+		slot.key = null;
+		try {
+			if (slot.cipher == null) {
+				slot.cipher = newCipher(transformation);
+			}
+		} catch (Exception e) {
+			throw new CryptoException("Error creating cipher", e);
+		}
+	}
+
+	private static void init(Slot slot, String transformation, RawKeyPackage key, int mode) throws CryptoException {
+		IvParameterSpec ivSpec = new IvParameterSpec(key.getIv());
+		create(slot, transformation);
+		slot.initializedWith = key;
+		try {
+			slot.cipher.init(mode, key.getKeySpec(), ivSpec);
+		} catch (Exception e) {
+			throw new CryptoException("Error creating cipher", e);
+		}
+		slot.key = key;
+		slot.mode = mode;
+	}
+}
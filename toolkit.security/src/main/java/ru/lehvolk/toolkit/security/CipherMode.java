@@ -0,0 +1,49 @@
+package ru.lehvolk.toolkit.security;
+
+/**
+ * Represents mode of block cipher used with {@link RawKeyPackage}
+ */
+public enum CipherMode {
+
+	/** cipher block chaining with PKCS#5 padding, IV of key package is used */
+	CBC("CBC/PKCS5Padding", 0, 0),
+	/**
+	 * Galois/counter mode, encrypts and authenticates data in one pass. IV of key package is not used: random nonce
+	 * is generated for every encryption and written before encrypted data, authentication tag is appended after it.
+	 * Tampered data fails decryption. Requires key type with 128-bit block, i.e. {@link KeyType#AES}.<br>
+	 * Random nonces limit usage of one key to 2^32 encryptions. Decryption releases data only after the tag is
+	 * verified, so streams are buffered in memory, large files should be processed with {@link SegmentedCrypto}.
+	 */
+	GCM("GCM/NoPadding", 12, 16);
+
+	private final String transformation;
+	private final int nonceSize;
+	private final int tagSize;
+
+	private CipherMode(String transformation, int nonceSize, int tagSize) {
+		this.transformation = transformation;
+		this.nonceSize = nonceSize;
+		this.tagSize = tagSize;
+	}
+
+	/**
+	 * @return the transformation, mode and padding part of cipher transformation
+	 */
+	public String getTransformation() {
+		return transformation;
+	}
+
+	/**
+	 * @return the nonceSize, count of bytes written before encrypted data (in bytes)
+	 */
+	public int getNonceSize() {
+		return nonceSize;
+	}
+
+	/**
+	 * @return the tagSize, count of authentication bytes appended to encrypted data (in bytes)
+	 */
+	public int getTagSize() {
+		return tagSize;
+	}
+}
@@ -0,0 +1,145 @@
+package ru.lehvolk.toolkit.security;
+
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Lookup table based hex and Base64 codecs writing into caller-supplied arrays
+ */
+final class Codecs {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	private static final byte[] HEX_VALUES = new byte[128];
+	private static final byte[] BASE64_VALUES = new byte[128];
+	private static final char PAD = '=';
+
+	static {
+		Arrays.fill(HEX_VALUES, (byte) -1);
+		for (int i = 0; i < HEX.length; i++) {
+			HEX_VALUES[HEX[i]] = (byte) i;
+			HEX_VALUES[Character.toUpperCase(HEX[i])] = (byte) i;
+		}
+		Arrays.fill(BASE64_VALUES, (byte) -1);
+		for (int i = 0; i < BASE64.length; i++) {
+			BASE64_VALUES[BASE64[i]] = (byte) i;
+		}
+	}
+
+	private Codecs() {
+	}
+
+	static int encodeHex(byte[] data, int off, int len, char[] out, int outOff) {
+		int j = outOff;
+		for (int i = off, end = off + len; i < end; i++) {
+			int b = data[i] & 0xFF;
+			out[j++] = HEX[b >>> 4];
+			out[j++] = HEX[b & 0x0F];
+		}
+		return j - outOff;
+	}
+
+	static void encodeHex(byte[] data, int off, int len, CharBuffer out) {
+		for (int i = off, end = off + len; i < end; i++) {
+			int b = data[i] & 0xFF;
+			out.put(HEX[b >>> 4]);
+			out.put(HEX[b & 0x0F]);
+		}
+	}
+
+	static int decodeHex(CharSequence hex, byte[] out, int outOff) throws CryptoException {
+		int len = hex.length();
+		if ((len & 1) != 0) {
+			throw new CryptoException("Odd number of characters in hex-string");
+		}
+		int j = outOff;
+		for (int i = 0; i < len; i += 2) {
+			out[j++] = (byte) (hexValue(hex.charAt(i), i) << 4 | hexValue(hex.charAt(i + 1), i + 1));
+		}
+		return j - outOff;
+	}
+
+	static int base64Length(int len) {
+		return (len + 2) / 3 * 4;
+	}
+
+	static int encodeBase64(byte[] data, int off, int len, char[] out, int outOff) {
+		int j = outOff;
+		int end = off + len;
+		int i = off;
+		for (; i + 2 < end; i += 3) {
+			int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+			out[j++] = BASE64[bits >>> 18];
+			out[j++] = BASE64[(bits >>> 12) & 0x3F];
+			out[j++] = BASE64[(bits >>> 6) & 0x3F];
+			out[j++] = BASE64[bits & 0x3F];
+		}
+		int rest = end - i;
+		if (rest > 0) {
+			int bits = (data[i] & 0xFF) << 16 | (rest == 2 ? (data[i + 1] & 0xFF) << 8 : 0);
+			out[j++] = BASE64[bits >>> 18];
+			out[j++] = BASE64[(bits >>> 12) & 0x3F];
+			out[j++] = rest == 2 ? BASE64[(bits >>> 6) & 0x3F] : PAD;
+			out[j++] = PAD;
+		}
+		return j - outOff;
+	}
+
+	static void encodeBase64(byte[] data, int off, int len, CharBuffer out) {
+		if (out.remaining() < base64Length(len)) {
+			throw new BufferOverflowException();
+		}
+		if (out.hasArray()) {
+			int written = encodeBase64(data, off, len, out.array(), out.arrayOffset() + out.position());
+			out.position(out.position() + written);
+			return;
+		}
+		for (int i = off, end = off + len; i < end; i += 3) {
+			int rest = Math.min(3, end - i);
+			int bits = (data[i] & 0xFF) << 16 | (rest > 1 ? (data[i + 1] & 0xFF) << 8 : 0)
+					| (rest > 2 ? data[i + 2] & 0xFF : 0);
+			out.put(BASE64[bits >>> 18]);
+			out.put(BASE64[(bits >>> 12) & 0x3F]);
+			out.put(rest > 1 ? BASE64[(bits >>> 6) & 0x3F] : PAD);
+			out.put(rest > 2 ? BASE64[bits & 0x3F] : PAD);
+		}
+	}
+
+	/*
+	 * Whitespaces are skipped, decoding stops at padding character.
+	 */
+	static int decodeBase64(CharSequence text, byte[] out, int outOff) throws CryptoException {
+		int j = outOff;
+		int bits = 0;
+		int count = 0;
+		for (int i = 0, len = text.length(); i < len; i++) {
+			char c = text.charAt(i);
+			if (c <= ' ') {
+				continue;
+			}
+			if (c == PAD) {
+				break;
+			}
+			int value = c < 128 ? BASE64_VALUES[c] : -1;
+			if (value < 0) {
+				throw new CryptoException("Illegal Base64 character at position " + i);
+			}
+			bits = (bits << 6 | value) & 0xFFFF;
+			count += 6;
+			if (count >= 8) {
+				count -= 8;
+				out[j++] = (byte) (bits >>> count);
+			}
+		}
+		return j - outOff;
+	}
+
+	private static int hexValue(char c, int index) throws CryptoException {
+		int value = c < 128 ? HEX_VALUES[c] : -1;
+		if (value < 0) {
+			throw new CryptoException("Illegal hexadecimal character " + c + " at index " + index);
+		}
+		return value;
+	}
+}
@@ -1,27 +1,32 @@
 package ru.lehvolk.toolkit.security;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
-import java.security.SecureRandom;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 import java.util.Arrays;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherOutputStream;
-import javax.crypto.KeyGenerator;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 
-import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.codec.binary.Base64OutputStream;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
@@ -30,6 +35,48 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
  */
 public class Crypto {
 
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final long MAPPED_THRESHOLD = 1 << 22;
+	private static final int MAPPED_WINDOW_SIZE = 1 << 26;
+
+	private static final ThreadLocal<byte[]> MAC_BUFFER = new ThreadLocal<byte[]>() {
+
+		@Override
+		protected byte[] initialValue() {
+			return new byte[64];
+		}
+	};
+
+	/**
+	 * Direct buffers of channel processing reused by thread
+	 */
+	private static final class ChannelBuffers {
+
+		private final ByteBuffer src = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private ByteBuffer dst = ByteBuffer.allocateDirect(BUFFER_SIZE + 64);
+		private boolean busy;
+
+		/**
+		 * @param capacity - required capacity of output buffer
+		 * @return cleared output buffer
+		 */
+		ByteBuffer output(int capacity) {
+			if (dst.capacity() < capacity) {
+				dst = ByteBuffer.allocateDirect(capacity);
+			}
+			dst.clear();
+			return dst;
+		}
+	}
+
+	private static final ThreadLocal<ChannelBuffers> CHANNEL_BUFFERS = new ThreadLocal<ChannelBuffers>() {
+
+		@Override
+		protected ChannelBuffers initialValue() {
+			return new ChannelBuffers();
+		}
+	};
+
 	static {
 		// add BouncyCastle cryptographic provider
 		Security.addProvider(new BouncyCastleProvider());
@@ -43,15 +90,53 @@ public class Crypto {
 	 * @throws CryptoException if any cryptographic error occurred
 	 */
 	public static byte[] decrypt(byte[] encrypted, RawKeyPackage key) throws CryptoException {
-		Cipher cipher = getCipher(key, Cipher.DECRYPT_MODE);
-
+		long start = CryptoMetrics.start();
 		try {
-			return cipher.doFinal(encrypted);
-		} catch (Exception e) {
-			throw new CryptoException("Decryption error", e);
+			CipherCache.Slot slot = CipherCache.acquire(key, Cipher.DECRYPT_MODE);
+			byte[] result;
+			try {
+				result = doFinal(slot, key, Cipher.DECRYPT_MODE, encrypted, 0, encrypted.length);
+				CipherCache.release(slot);
+			} catch (Exception e) {
+				CipherCache.discard(slot);
+				throw new CryptoException("Decryption error", e);
+			}
+			CryptoMetrics.success(CryptoOperation.DECRYPT, key.getType(), encrypted.length, start);
+			return result;
+		} catch (CryptoException e) {
+			CryptoMetrics.failure(CryptoOperation.DECRYPT, key.getType(), start);
+			throw e;
 		}
 	}
 
+	/**
+	 * Decrypts remaining bytes of input buffer into output buffer with given secret key
+	 * @param in - buffer of encrypted data, position is moved to its limit
+	 * @param out - buffer for original bytes, at least {@link #outputSize(RawKeyPackage, int, int)} bytes remaining
+	 * @param key - secret key
+	 * @return count of bytes written to output buffer
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static int decrypt(ByteBuffer in, ByteBuffer out, RawKeyPackage key) throws CryptoException {
+		return doFinal(in, out, key, Cipher.DECRYPT_MODE);
+	}
+
+	/**
+	 * Decrypts portion of array into output array with given secret key
+	 * @param encrypted - bytes of encrypted data
+	 * @param off - offset of encrypted data
+	 * @param len - length of encrypted data
+	 * @param out - array for original bytes
+	 * @param outOff - offset in output array
+	 * @param key - secret key
+	 * @return count of bytes written to output array
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static int decrypt(byte[] encrypted, int off, int len, byte[] out, int outOff, RawKeyPackage key)
+			throws CryptoException {
+		return doFinal(encrypted, off, len, out, outOff, key, Cipher.DECRYPT_MODE);
+	}
+
 	/**
 	 * Decrypts specified File with given secret key
 	 * @param source - File with encrypted content
@@ -63,6 +148,19 @@ public class Crypto {
 		processFile(source, dest, key, Cipher.DECRYPT_MODE);
 	}
 
+	/**
+	 * Decrypts specified File with given secret key
+	 * @param source - File with encrypted content
+	 * @param dest - File for storing clear content
+	 * @param key - secret key
+	 * @param processing - {@link FileProcessing} used for reading and writing files
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static void decryptFile(File source, File dest, RawKeyPackage key, FileProcessing processing)
+			throws CryptoException {
+		processFile(source, dest, key, Cipher.DECRYPT_MODE, processing);
+	}
+
 	/**
 	 * Decrypts data from Base64 encoded string with given secret key
 	 * @param encrypted - Base64 encoded string of encrypted data
@@ -75,6 +173,31 @@ public class Crypto {
 		return decryptToString(bytes, key);
 	}
 
+	/**
+	 * Decrypts Base64 encoded data of input stream to specified output stream, whitespaces of input are ignored.<br>
+	 * Both streams are closed after processing.
+	 * @param encrypted - {@link InputStream} of Base64 encoded encrypted data
+	 * @param os - {@link OutputStream} for original bytes
+	 * @param key - secret key
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static void decryptFromBase64(InputStream encrypted, OutputStream os, RawKeyPackage key)
+			throws CryptoException {
+		processStream(new Base64InputStream(encrypted), os, key, Cipher.DECRYPT_MODE);
+	}
+
+	/**
+	 * Decrypts Base64 encoded data of reader to specified output stream, whitespaces of input are ignored.<br>
+	 * Reader and stream are closed after processing.
+	 * @param encrypted - {@link Reader} of Base64 encoded encrypted data
+	 * @param os - {@link OutputStream} for original bytes
+	 * @param key - secret key
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static void decryptFromBase64(Reader encrypted, OutputStream os, RawKeyPackage key) throws CryptoException {
+		decryptFromBase64(new AsciiStreams.ReaderInputStream(encrypted), os, key);
+	}
+
 	/**
 	 * Decrypts data with given secret key to string
 	 * @param encrypted - bytes of encrypted data
@@ -98,12 +221,188 @@ public class Crypto {
 	 * @throws CryptoException if any cryptographic error occurred
 	 */
 	public static byte[] encrypt(byte[] data, RawKeyPackage key) throws CryptoException {
-		Cipher cipher = getCipher(key, Cipher.ENCRYPT_MODE);
+		long start = CryptoMetrics.start();
+		try {
+			CipherCache.Slot slot = CipherCache.acquire(key, Cipher.ENCRYPT_MODE);
+			byte[] result;
+			try {
+				result = doFinal(slot, key, Cipher.ENCRYPT_MODE, data, 0, data.length);
+				CipherCache.release(slot);
+			} catch (Exception e) {
+				CipherCache.discard(slot);
+				throw new CryptoException("Error encrypting bytes", e);
+			}
+			CryptoMetrics.success(CryptoOperation.ENCRYPT, key.getType(), data.length, start);
+			return result;
+		} catch (CryptoException e) {
+			CryptoMetrics.failure(CryptoOperation.ENCRYPT, key.getType(), start);
+			throw e;
+		}
+	}
+
+	/**
+	 * Encrypts remaining bytes of input buffer into output buffer with given secret key
+	 * @param in - buffer of data for encrypt, position is moved to its limit
+	 * @param out - buffer for encrypted bytes, at least {@link #outputSize(RawKeyPackage, int, int)} bytes remaining
+	 * @param key - secret key package
+	 * @return count of bytes written to output buffer
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static int encrypt(ByteBuffer in, ByteBuffer out, RawKeyPackage key) throws CryptoException {
+		return doFinal(in, out, key, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * Encrypts portion of array into output array with given secret key
+	 * @param data - array for encrypt
+	 * @param off - offset of data for encrypt
+	 * @param len - length of data for encrypt
+	 * @param out - array for encrypted bytes
+	 * @param outOff - offset in output array
+	 * @param key - secret key package
+	 * @return count of bytes written to output array
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static int encrypt(byte[] data, int off, int len, byte[] out, int outOff, RawKeyPackage key)
+			throws CryptoException {
+		return doFinal(data, off, len, out, outOff, key, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * Calculates size of output buffer enough for encryption/decryption of input with given length
+	 * @param key - secret key package
+	 * @param mode - mode: Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
+	 * @param inputLen - length of input data
+	 * @return maximal count of bytes produced by operation
+	 */
+	public static int outputSize(RawKeyPackage key, int mode, int inputLen) {
+		CipherMode cipherMode = key.getMode();
+		if (cipherMode == CipherMode.GCM) {
+			int overhead = cipherMode.getNonceSize() + cipherMode.getTagSize();
+			return mode == Cipher.DECRYPT_MODE ? Math.max(0, inputLen - overhead) : inputLen + overhead;
+		}
+		if (mode == Cipher.DECRYPT_MODE) {
+			return inputLen;
+		}
+		int blockSize = key.getType().getIvSize() / 8;
+		return (inputLen / blockSize + 1) * blockSize;
+	}
 
+	private static int doFinal(ByteBuffer in, ByteBuffer out, RawKeyPackage key, int mode) throws CryptoException {
+		long start = CryptoMetrics.start();
+		int len = in.remaining();
 		try {
-			return cipher.doFinal(data);
-		} catch (Exception e) {
-			throw new CryptoException("Error encrypting bytes", e);
+			CipherCache.Slot slot = CipherCache.acquire(key, mode);
+			int result;
+			try {
+				result = doFinal(slot, key, mode, in, out);
+				CipherCache.release(slot);
+			} catch (Exception e) {
+				CipherCache.discard(slot);
+				throw new CryptoException(mode == Cipher.ENCRYPT_MODE ? "Error encrypting bytes" : "Decryption error",
+						e);
+			}
+			CryptoMetrics.success(operation(mode), key.getType(), len, start);
+			return result;
+		} catch (CryptoException e) {
+			CryptoMetrics.failure(operation(mode), key.getType(), start);
+			throw e;
+		}
+	}
+
+	private static int doFinal(byte[] in, int off, int len, byte[] out, int outOff, RawKeyPackage key, int mode)
+			throws CryptoException {
+		long start = CryptoMetrics.start();
+		try {
+			CipherCache.Slot slot = CipherCache.acquire(key, mode);
+			int result;
+			try {
+				result = doFinal(slot, key, mode, in, off, len, out, outOff);
+				CipherCache.release(slot);
+			} catch (Exception e) {
+				CipherCache.discard(slot);
+				throw new CryptoException(mode == Cipher.ENCRYPT_MODE ? "Error encrypting bytes" : "Decryption error",
+						e);
+			}
+			CryptoMetrics.success(operation(mode), key.getType(), len, start);
+			return result;
+		} catch (CryptoException e) {
+			CryptoMetrics.failure(operation(mode), key.getType(), start);
+			throw e;
+		}
+	}
+
+	/*
+	 * Whole operation on acquired cipher: nonce of GCM key package is generated and put before encrypted data
+	 * or taken from its beginning.
+	 */
+	static byte[] doFinal(CipherCache.Slot slot, RawKeyPackage key, int mode, byte[] in, int off, int len)
+			throws Exception {
+		if (key.getMode() == CipherMode.CBC) {
+			return slot.getCipher().doFinal(in, off, len);
+		}
+		checkLength(key, mode, len);
+		byte[] out = new byte[outputSize(key, mode, len)];
+		int count = doFinal(slot, key, mode, in, off, len, out, 0);
+		return count == out.length ? out : Arrays.copyOf(out, count);
+	}
+
+	static int doFinal(CipherCache.Slot slot, RawKeyPackage key, int mode, byte[] in, int off, int len, byte[] out,
+			int outOff) throws Exception {
+		CipherMode cipherMode = key.getMode();
+		if (cipherMode == CipherMode.CBC) {
+			return slot.getCipher().doFinal(in, off, len, out, outOff);
+		}
+		checkLength(key, mode, len);
+		int nonceSize = cipherMode.getNonceSize();
+		byte[] nonce = new byte[nonceSize];
+		if (mode == Cipher.ENCRYPT_MODE) {
+			initNonce(slot, key, mode, nonce);
+			// nonce is copied after encryption, so output may overlap input
+			int count = slot.getCipher().doFinal(in, off, len, out, outOff + nonceSize);
+			System.arraycopy(nonce, 0, out, outOff, nonceSize);
+			return nonceSize + count;
+		}
+		System.arraycopy(in, off, nonce, 0, nonceSize);
+		initNonce(slot, key, mode, nonce);
+		return slot.getCipher().doFinal(in, off + nonceSize, len - nonceSize, out, outOff);
+	}
+
+	private static int doFinal(CipherCache.Slot slot, RawKeyPackage key, int mode, ByteBuffer in, ByteBuffer out)
+			throws Exception {
+		CipherMode cipherMode = key.getMode();
+		if (cipherMode == CipherMode.CBC) {
+			return slot.getCipher().doFinal(in, out);
+		}
+		checkLength(key, mode, in.remaining());
+		byte[] nonce = new byte[cipherMode.getNonceSize()];
+		if (mode == Cipher.ENCRYPT_MODE) {
+			initNonce(slot, key, mode, nonce);
+			out.put(nonce);
+			return nonce.length + slot.getCipher().doFinal(in, out);
+		}
+		in.get(nonce);
+		initNonce(slot, key, mode, nonce);
+		return slot.getCipher().doFinal(in, out);
+	}
+
+	private static CryptoOperation operation(int mode) {
+		return mode == Cipher.ENCRYPT_MODE ? CryptoOperation.ENCRYPT : CryptoOperation.DECRYPT;
+	}
+
+	// generates nonce for encryption, for decryption given nonce is used
+	private static void initNonce(CipherCache.Slot slot, RawKeyPackage key, int mode, byte[] nonce)
+			throws GeneralSecurityException, CryptoException {
+		if (mode == Cipher.ENCRYPT_MODE) {
+			KeyGenerators.nextBytes(nonce);
+		}
+		CipherCache.init(slot, key, mode, nonce);
+	}
+
+	private static void checkLength(RawKeyPackage key, int mode, int len) throws CryptoException {
+		CipherMode cipherMode = key.getMode();
+		if (mode == Cipher.DECRYPT_MODE && len < cipherMode.getNonceSize() + cipherMode.getTagSize()) {
+			throw new CryptoException("Encrypted data is too short");
 		}
 	}
 
@@ -133,6 +432,19 @@ public class Crypto {
 		processFile(source, dest, key, Cipher.ENCRYPT_MODE);
 	}
 
+	/**
+	 * Encrypts specified File with given secret key
+	 * @param source - File with clear content
+	 * @param dest - File for storing encrypted content
+	 * @param key - secret key
+	 * @param processing - {@link FileProcessing} used for reading and writing files
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static void encryptFile(File source, File dest, RawKeyPackage key, FileProcessing processing)
+			throws CryptoException {
+		processFile(source, dest, key, Cipher.ENCRYPT_MODE, processing);
+	}
+
 	/**
 	 * Encrypts string and make Base64 transformation
 	 * @param clearText - text to be encrypted
@@ -144,6 +456,31 @@ public class Crypto {
 		return toBase64(encrypt(clearText, key));
 	}
 
+	/**
+	 * Encrypts data of input stream and writes it Base64 encoded to specified output stream.<br>
+	 * Both streams are closed after processing.
+	 * @param is - {@link InputStream} to be encrypted
+	 * @param encrypted - {@link OutputStream} for Base64 encoded encrypted data
+	 * @param key - secret key
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static void encryptToBase64(InputStream is, OutputStream encrypted, RawKeyPackage key)
+			throws CryptoException {
+		processStream(is, new Base64OutputStream(encrypted, true, 0, null), key, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * Encrypts data of input stream and writes it Base64 encoded to specified writer.<br>
+	 * Stream and writer are closed after processing.
+	 * @param is - {@link InputStream} to be encrypted
+	 * @param encrypted - {@link Writer} for Base64 encoded encrypted data
+	 * @param key - secret key
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static void encryptToBase64(InputStream is, Writer encrypted, RawKeyPackage key) throws CryptoException {
+		encryptToBase64(is, new AsciiStreams.WriterOutputStream(encrypted), key);
+	}
+
 	/**
 	 * Decodes Base64-encoded string
 	 * @param text - Base64 encoded string
@@ -153,10 +490,20 @@ public class Crypto {
 		return Base64.decodeBase64(text.trim());
 	}
 
+	/**
+	 * Decodes Base64 characters into output array, whitespaces are skipped
+	 * @param text - Base64 encoded characters
+	 * @param out - array for original bytes, must have room for <code>text.length() * 3 / 4</code> bytes
+	 * @param outOff - offset in output array
+	 * @return count of bytes written
+	 * @throws CryptoException if text contains illegal characters
+	 */
+	public static int fromBase64(CharSequence text, byte[] out, int outOff) throws CryptoException {
+		return Codecs.decodeBase64(text, out, outOff);
+	}
+
 	private static SecretKey generateSecretKey(KeyType type) throws Exception {
-		KeyGenerator keygen = KeyGenerator.getInstance(type.getAlias());
-		keygen.init(type.getKeySize(), SecureRandom.getInstance("SHA1PRNG", "SUN"));
-		return keygen.generateKey();
+		return KeyGenerators.generate(type);
 	}
 
 	/**
@@ -166,52 +513,67 @@ public class Crypto {
 	 * @throws CryptoException if any cryptographic error occurred
 	 */
 	public static SecretKeyPackage generateKey(KeyType type) throws CryptoException {
+		long start = CryptoMetrics.start();
 		try {
-			KeyGenerator keygen = KeyGenerator.getInstance(type.getAlias());
-			keygen.init(type.getKeySize(), SecureRandom.getInstance("SHA1PRNG", "SUN"));
 			SecretKey sKey = generateSecretKey(type);
 			SecretKey iv = generateSecretKey(type);
 
+			CryptoMetrics.success(CryptoOperation.GENERATE_KEY, type, 0, start);
 			return new SecretKeyPackage(sKey, iv, type);
 		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.GENERATE_KEY, type, start);
 			throw new CryptoException("Error generating key", e);
 		}
 	}
 
 	/**
-	 * Generates secret key for specified type without IV
+	 * Generates secret key for specified type with zero IV of block size in bytes
 	 * @param type - type of key, {@link KeyType}
 	 * @return {@link SecretKeyPackage} of secret key
 	 * @throws CryptoException if any cryptographic error occurred
 	 */
 	public static RawKeyPackage generateRawKey(KeyType type) throws CryptoException {
+		return generateRawKey(type, CipherMode.CBC);
+	}
+
+	/**
+	 * Generates secret key for specified type and cipher mode with zero IV of block size in bytes
+	 * @param type - type of key, {@link KeyType}
+	 * @param mode - mode of cipher, {@link CipherMode}
+	 * @return {@link SecretKeyPackage} of secret key
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public static RawKeyPackage generateRawKey(KeyType type, CipherMode mode) throws CryptoException {
+		long start = CryptoMetrics.start();
 		try {
 			SecretKey key1 = generateSecretKey(type);
 			SecretKey key2 = generateSecretKey(type);
 
 			byte[] key = xor(key1.getEncoded(), key2.getEncoded());
 
-			return new RawKeyPackage(key, new byte[type.getIvSize()], type);
+			RawKeyPackage result = new RawKeyPackage(key, new byte[type.getIvSize() / 8], type, mode);
+			CryptoMetrics.success(CryptoOperation.GENERATE_KEY, type, 0, start);
+			return result;
 		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.GENERATE_KEY, type, start);
 			throw new CryptoException("Error generating key", e);
 		}
 	}
 
-	private static Cipher getCipher(RawKeyPackage key, int mode) throws CryptoException {
-		SecretKeySpec skeySpec = new SecretKeySpec(key.getKey(), key.getType().getAlias());
-		IvParameterSpec ivSpec = new IvParameterSpec(key.getIv());
-		try {
-			Cipher cipher = Cipher.getInstance(key.getType().getAlias() + "/CBC/PKCS5Padding");
-			cipher.init(mode, skeySpec, ivSpec);
-
-			return cipher;
-		} catch (Exception e) {
-			throw new CryptoException("Error creating cipher", e);
-		}
+	/**
+	 * Drops ciphers, MACs and direct buffers cached by current thread.<br>
+	 * {@link #encrypt(byte[], RawKeyPackage)}, {@link #decrypt(byte[], RawKeyPackage)} and
+	 * {@link #processStream(InputStream, OutputStream, RawKeyPackage, int)} reuse initialized ciphers per thread,
+	 * pooled threads of redeployable applications should call this method before returning to the pool.
+	 */
+	public static void clearCipherCache() {
+		CipherCache.clear();
+		MacCache.clear();
+		CHANNEL_BUFFERS.remove();
 	}
 
 	/**
-	 * Generates "process" key on base of two given keys
+	 * Generates "process" key on base of two given keys, use {@link ProcessKeyCache} for frequently combined pairs
 	 * @param k1 - key #1
 	 * @param k2 - key #2
 	 * @return {@link RawKeyPackage} consists "process" key and process IV
@@ -236,29 +598,242 @@ public class Crypto {
 		return new RawKeyPackage(p, iv, k1.getType());
 	}
 
+	/**
+	 * Generates "process" key on base of two given keys and keeps it in direct memory, heap copies of keys made while
+	 * generation are wiped
+	 * @param k1 - key #1
+	 * @param k2 - key #2
+	 * @return {@link DirectKeyPackage} consists "process" key and process IV
+	 */
+	public static DirectKeyPackage makeDirectProcessKey(SecretKeyPackage k1, SecretKeyPackage k2) {
+
+		if (!k1.getType().equals(k2.getType())) {
+			throw new IllegalArgumentException("Keys must be the same type!");
+		}
+
+		byte[] key1 = null;
+		byte[] iv1 = null;
+		byte[] key2 = null;
+		byte[] iv2 = null;
+		byte[] p = null;
+		byte[] iv = null;
+		try {
+			key1 = k1.getKey().getEncoded();
+			iv1 = k1.getIv().getEncoded();
+			key2 = k2.getKey().getEncoded();
+			iv2 = k2.getIv().getEncoded();
+
+			p = xor(key1, key2);
+			iv = xor(iv1, iv2);
+
+			return new DirectKeyPackage(p, Arrays.copyOf(iv, k1.getType().getIvSize() / 8), k1.getType());
+		} finally {
+			wipe(key1);
+			wipe(iv1);
+			wipe(key2);
+			wipe(iv2);
+			wipe(p);
+			wipe(iv);
+		}
+	}
+
+	private static void wipe(byte[] bytes) {
+		if (bytes != null) {
+			Arrays.fill(bytes, (byte) 0);
+		}
+	}
+
 	private static void processFile(File source, File dest, RawKeyPackage key, int mode) throws CryptoException {
-		FileInputStream in = null;
-		FileOutputStream out = null;
+		processFile(source, dest, key, mode, FileProcessing.CHANNEL);
+	}
+
+	private static void processFile(File source, File dest, RawKeyPackage key, int mode, FileProcessing processing)
+			throws CryptoException {
+		CryptoOperation operation = mode == Cipher.ENCRYPT_MODE ? CryptoOperation.ENCRYPT_FILE
+				: CryptoOperation.DECRYPT_FILE;
+		long start = CryptoMetrics.start();
+		FileChannel in = null;
+		FileChannel out = null;
 
 		try {
-			in = new FileInputStream(source);
-			out = new FileOutputStream(dest);
-			processStream(in, out, key, mode);
+			in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			long size = in.size();
+			out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			// GCM decryption releases data only at the end, so it is not suitable for mapped windows
+			if (processing == FileProcessing.MAPPED && key.getMode() == CipherMode.CBC
+					&& size >= MAPPED_THRESHOLD) {
+				processMapped(in, out, key, mode);
+			} else {
+				transform(in, out, key, mode);
+			}
+			CryptoMetrics.success(operation, key.getType(), size, start);
 		} catch (Exception e) {
+			CryptoMetrics.failure(operation, key.getType(), start);
 			throw new CryptoException("Error file processing", e);
 		} finally {
-			if (in != null) {
-				try {
-					in.close();
-				} catch (IOException e) {
+			closeQuietly(in);
+			closeQuietly(out);
+		}
+	}
+
+	/*
+	 * Runs cipher over mapped windows of source, output is written to destination channel through reused direct
+	 * buffer, so only read-only mappings of source are created.
+	 */
+	private static void processMapped(FileChannel in, FileChannel out, RawKeyPackage key, int mode)
+			throws IOException, CryptoException, GeneralSecurityException {
+		CipherCache.Slot slot = CipherCache.acquire(key, mode);
+		ChannelBuffers buffers = acquireBuffers();
+		boolean completed = false;
+
+		try {
+			Cipher cipher = slot.getCipher();
+			ByteBuffer dst = buffers.output(BUFFER_SIZE + 2 * cipher.getBlockSize());
+			long size = in.size();
+			long inPos = 0;
+
+			while (inPos < size) {
+				long len = Math.min(MAPPED_WINDOW_SIZE, size - inPos);
+				ByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, inPos, len);
+				int end = src.limit();
+				while (src.position() < end) {
+					src.limit(Math.min(end, src.position() + BUFFER_SIZE));
+					cipher.update(src, dst);
+					writeFully(out, dst);
 				}
+				inPos += len;
 			}
-			if (out != null) {
-				try {
-					out.close();
-				} catch (IOException e) {
+			cipher.doFinal(ByteBuffer.allocate(0), dst);
+			writeFully(out, dst);
+			completed = true;
+		} finally {
+			buffers.busy = false;
+			if (completed) {
+				CipherCache.release(slot);
+			} else {
+				CipherCache.discard(slot);
+			}
+		}
+	}
+
+	/**
+	 * Encrypts/Decrypts input channel to specified output channel using direct buffers.<br>
+	 * Both channels are closed after processing.
+	 * @param in - {@link ReadableByteChannel} to be processed
+	 * @param out - {@link WritableByteChannel} for output
+	 * @param key - {@link RawKeyPackage}
+	 * @param mode - mode: Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
+	 * @throws CryptoException if any error occurred
+	 */
+	public static void processChannel(ReadableByteChannel in, WritableByteChannel out, RawKeyPackage key, int mode)
+			throws CryptoException {
+		CryptoOperation operation = mode == Cipher.ENCRYPT_MODE ? CryptoOperation.ENCRYPT_STREAM
+				: CryptoOperation.DECRYPT_STREAM;
+		long start = CryptoMetrics.start();
+		try {
+			long bytes = transform(in, out, key, mode);
+			CryptoMetrics.success(operation, key.getType(), bytes, start);
+		} catch (CryptoException e) {
+			CryptoMetrics.failure(operation, key.getType(), start);
+			throw e;
+		}
+	}
+
+	// runs cipher over channels, both channels are closed, returns count of bytes read
+	private static long transform(ReadableByteChannel in, WritableByteChannel out, RawKeyPackage key, int mode)
+			throws CryptoException {
+		CipherCache.Slot slot = null;
+		ChannelBuffers buffers = acquireBuffers();
+		boolean completed = false;
+		long bytes = 0;
+
+		try {
+			ByteBuffer nonce = ByteBuffer.allocate(key.getMode().getNonceSize());
+			if (mode == Cipher.DECRYPT_MODE) {
+				readFully(in, nonce);
+			}
+			slot = CipherCache.acquire(key, mode);
+			if (nonce.capacity() > 0) {
+				initNonce(slot, key, mode, nonce.array());
+				if (mode == Cipher.ENCRYPT_MODE) {
+					nonce.position(nonce.capacity());
+					writeFully(out, nonce);
 				}
 			}
+
+			Cipher cipher = slot.getCipher();
+			ByteBuffer src = buffers.src;
+			ByteBuffer dst = buffers.output(BUFFER_SIZE + 2 * cipher.getBlockSize());
+
+			int count;
+			while ((count = in.read(src)) > -1) {
+				bytes += count;
+				src.flip();
+				cipher.update(src, dst);
+				writeFully(out, dst);
+				src.clear();
+			}
+			src.flip();
+			int finalSize = cipher.getOutputSize(src.remaining());
+			if (finalSize > dst.capacity()) {
+				// GCM decryption holds data until the tag is verified
+				dst = ByteBuffer.allocate(finalSize);
+			}
+			cipher.doFinal(src, dst);
+			writeFully(out, dst);
+			completed = true;
+			return bytes;
+		} catch (Exception e) {
+			throw new CryptoException("Error processing channel", e);
+		} finally {
+			buffers.busy = false;
+			closeQuietly(in);
+			closeQuietly(out);
+			if (slot != null) {
+				if (completed) {
+					CipherCache.release(slot);
+				} else {
+					CipherCache.discard(slot);
+				}
+			}
+		}
+	}
+
+	private static ChannelBuffers acquireBuffers() {
+		ChannelBuffers buffers = CHANNEL_BUFFERS.get();
+		if (buffers.busy) {
+			// channel of nested call is processed by the same thread
+			buffers = new ChannelBuffers();
+		}
+		buffers.busy = true;
+		buffers.src.clear();
+		return buffers;
+	}
+
+	private static void readFully(ReadableByteChannel in, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			if (in.read(buf) < 0) {
+				throw new IOException("Unexpected end of data");
+			}
+		}
+	}
+
+	private static void writeFully(WritableByteChannel out, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			out.write(buf);
+		}
+		buf.clear();
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				//ignore
+			}
 		}
 	}
 
@@ -268,24 +843,52 @@ public class Crypto {
 	 * @param os - {@link OutputStream} for output
 	 * @param key - {@link RawKeyPackage}
 	 * @param mode - mode: Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
-	 * @throws CryptoException if any error occurred
+	 * @throws CryptoException if any error occurred, including wrong padding or failed authentication
 	 */
 	public static void processStream(InputStream is, OutputStream os, RawKeyPackage key, int mode)
 			throws CryptoException {
-		Cipher cipher = getCipher(key, mode);
-		CipherOutputStream out = null;
+		CryptoOperation operation = mode == Cipher.ENCRYPT_MODE ? CryptoOperation.ENCRYPT_STREAM
+				: CryptoOperation.DECRYPT_STREAM;
+		long start = CryptoMetrics.start();
+		CipherCache.Slot slot = null;
+		boolean completed = false;
+		long bytes = 0;
 
 		try {
-			out = new CipherOutputStream(os, cipher);
+			byte[] nonce = new byte[key.getMode().getNonceSize()];
+			if (mode == Cipher.DECRYPT_MODE) {
+				readFully(is, nonce);
+			}
+			slot = CipherCache.acquire(key, mode);
+			if (nonce.length > 0) {
+				initNonce(slot, key, mode, nonce);
+				if (mode == Cipher.ENCRYPT_MODE) {
+					os.write(nonce);
+				}
+			}
 
-			byte[] buf = new byte[8];
+			// cipher is driven directly, so failed padding or authentication is not swallowed on close
+			Cipher cipher = slot.getCipher();
+			byte[] buf = new byte[BUFFER_SIZE];
+			byte[] outBuf = new byte[BUFFER_SIZE + 2 * cipher.getBlockSize()];
 
 			int count;
 			while ((count = is.read(buf)) > -1) {
-				out.write(buf, 0, count);
+				bytes += count;
+				os.write(outBuf, 0, cipher.update(buf, 0, count, outBuf, 0));
+			}
+			int finalSize = cipher.getOutputSize(0);
+			if (finalSize > outBuf.length) {
+				// GCM decryption holds data until the tag is verified
+				outBuf = new byte[finalSize];
 			}
-			out.flush();
+			os.write(outBuf, 0, cipher.doFinal(outBuf, 0));
+			os.flush();
+			os.close();
+			completed = true;
+			CryptoMetrics.success(operation, key.getType(), bytes, start);
 		} catch (Exception e) {
+			CryptoMetrics.failure(operation, key.getType(), start);
 			throw new CryptoException("Error decrypting stream", e);
 		} finally {
 			if (is != null) {
@@ -294,22 +897,75 @@ public class Crypto {
 				} catch (IOException e) {
 				}
 			}
-			if (out != null) {
+			if (!completed && os != null) {
 				try {
-					out.close();
+					os.close();
 				} catch (IOException e) {
 				}
 			}
+			if (slot != null) {
+				if (completed) {
+					CipherCache.release(slot);
+				} else {
+					CipherCache.discard(slot);
+				}
+			}
+		}
+	}
+
+	private static void readFully(InputStream is, byte[] buf) throws IOException {
+		int off = 0;
+		while (off < buf.length) {
+			int count = is.read(buf, off, buf.length - off);
+			if (count < 0) {
+				throw new IOException("Unexpected end of data");
+			}
+			off += count;
 		}
 	}
 
 	/**
 	 * Encodes given bytes to Base64-encoded string
 	 * @param bytes - original bytes
-	 * @return Base64-encoded string
+	 * @return Base64-encoded string, null if bytes are null
 	 */
 	public static String toBase64(byte[] bytes) {
-		return safeTrim(Base64.encodeBase64String(bytes));
+		if (bytes == null) {
+			return null;
+		}
+		char[] chars = new char[Codecs.base64Length(bytes.length)];
+		Codecs.encodeBase64(bytes, 0, bytes.length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Encodes portion of array to Base64 characters of output array
+	 * @param bytes - original bytes
+	 * @param off - offset of bytes to encode
+	 * @param len - length of bytes to encode
+	 * @param out - array for characters, must have room for {@link #base64Length(int)} characters
+	 * @param outOff - offset in output array
+	 * @return count of characters written
+	 */
+	public static int toBase64(byte[] bytes, int off, int len, char[] out, int outOff) {
+		return Codecs.encodeBase64(bytes, off, len, out, outOff);
+	}
+
+	/**
+	 * Encodes given bytes to Base64 characters of output buffer
+	 * @param bytes - original bytes
+	 * @param out - buffer for characters, must have {@link #base64Length(int)} characters remaining
+	 */
+	public static void toBase64(byte[] bytes, CharBuffer out) {
+		Codecs.encodeBase64(bytes, 0, bytes.length, out);
+	}
+
+	/**
+	 * @param len - count of bytes
+	 * @return count of Base64 characters encoding given count of bytes
+	 */
+	public static int base64Length(int len) {
+		return Codecs.base64Length(len);
 	}
 
 	/**
@@ -322,16 +978,98 @@ public class Crypto {
 	 * @throws CryptoException if cryptographic error occurred
 	 */
 	public static byte[] createMAC(RawKeyPackage key, byte[] data, int signedLen, int macLen) throws CryptoException {
+		long start = CryptoMetrics.start();
+		try {
+			MacCache.Entry entry = acquireMAC(key);
+			Mac mac = entry.getMac();
+			// portion longer than data is signed as zero padded
+			mac.update(data, 0, Math.min(signedLen, data.length));
+			for (int i = data.length; i < signedLen; i++) {
+				mac.update((byte) 0);
+			}
+			byte[] result = Arrays.copyOf(mac.doFinal(), macLen);
+			MacCache.release(entry);
+			CryptoMetrics.success(CryptoOperation.MAC, key.getType(), signedLen, start);
+			return result;
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.MAC, key.getType(), start);
+			throw new CryptoException("MAC creation error", e);
+		}
+	}
+
+	/**
+	 * Generates MAC signature for remaining bytes of input buffer with given key
+	 * @param key - {@link RawKeyPackage}
+	 * @param in - data to be signed, position is moved to its limit
+	 * @param out - buffer for MAC, at least macLen bytes remaining
+	 * @param macLen - size of MAC
+	 * @throws CryptoException if cryptographic error occurred
+	 */
+	public static void createMAC(RawKeyPackage key, ByteBuffer in, ByteBuffer out, int macLen) throws CryptoException {
+		long start = CryptoMetrics.start();
+		int len = in.remaining();
 		try {
-			SecretKeySpec spec = new SecretKeySpec(key.getKey(), key.getType().getAlias());
-			Mac mac = Mac.getInstance("ISO9797Alg3Mac");
-			mac.init(spec);
-			return Arrays.copyOf(mac.doFinal(Arrays.copyOf(data, signedLen)), macLen);
+			MacCache.Entry entry = acquireMAC(key);
+			Mac mac = entry.getMac();
+			mac.update(in);
+			byte[] result = MAC_BUFFER.get();
+			mac.doFinal(result, 0);
+			putMAC(result, mac.getMacLength(), macLen, out);
+			MacCache.release(entry);
+			CryptoMetrics.success(CryptoOperation.MAC, key.getType(), len, start);
 		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.MAC, key.getType(), start);
 			throw new CryptoException("MAC creation error", e);
 		}
 	}
 
+	/**
+	 * Generates MAC signature for portion of array with given key
+	 * @param key - {@link RawKeyPackage}
+	 * @param data - data to be signed
+	 * @param off - offset of data to sign
+	 * @param len - length of data to sign
+	 * @param out - array for MAC
+	 * @param outOff - offset in output array
+	 * @param macLen - size of MAC
+	 * @throws CryptoException if cryptographic error occurred
+	 */
+	public static void createMAC(RawKeyPackage key, byte[] data, int off, int len, byte[] out, int outOff, int macLen)
+			throws CryptoException {
+		long start = CryptoMetrics.start();
+		try {
+			MacCache.Entry entry = acquireMAC(key);
+			Mac mac = entry.getMac();
+			mac.update(data, off, len);
+			byte[] result = MAC_BUFFER.get();
+			mac.doFinal(result, 0);
+			int signLen = Math.min(mac.getMacLength(), macLen);
+			System.arraycopy(result, 0, out, outOff, signLen);
+			Arrays.fill(out, outOff + signLen, outOff + macLen, (byte) 0);
+			MacCache.release(entry);
+			CryptoMetrics.success(CryptoOperation.MAC, key.getType(), len, start);
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.MAC, key.getType(), start);
+			throw new CryptoException("MAC creation error", e);
+		}
+	}
+
+	private static MacCache.Entry acquireMAC(RawKeyPackage key) throws Exception {
+		if (key instanceof DirectKeyPackage) {
+			return MacCache.acquire("ISO9797Alg3Mac", (DirectKeyPackage) key);
+		}
+		return MacCache.acquire("ISO9797Alg3Mac", key.getType().getAlias(), key.getKey());
+	}
+
+	// puts MAC truncated or zero padded to macLen bytes
+	private static void putMAC(byte[] result, int resultLen, int macLen, ByteBuffer out) {
+		int signLen = Math.min(resultLen, macLen);
+		out.put(result, 0, signLen);
+		for (int i = signLen; i < macLen; i++) {
+			out.put((byte) 0);
+		}
+	}
+
 	/**
 	 * Generates HmacSHA1 MAC signature for data specified with given key
 	 * @param key - key characters as string
@@ -340,12 +1078,37 @@ public class Crypto {
 	 * @throws CryptoException if cryptographic error occurred
 	 */
 	public static byte[] hmacSign(String key, String source) throws CryptoException {
+		long start = CryptoMetrics.start();
+		try {
+			MacCache.Entry entry = MacCache.acquire("HmacSHA1", key);
+			byte[] bytes = source.getBytes("UTF-8");
+			byte[] result = entry.getMac().doFinal(bytes);
+			MacCache.release(entry);
+			CryptoMetrics.success(CryptoOperation.HMAC, null, bytes.length, start);
+			return result;
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.HMAC, null, start);
+			throw new CryptoException("MAC creation error", e);
+		}
+	}
+
+	/**
+	 * Generates HmacSHA1 MAC signature for data specified with given key
+	 * @param key - key bytes
+	 * @param source - bytes to sign
+	 * @return MAC bytes
+	 * @throws CryptoException if cryptographic error occurred
+	 */
+	public static byte[] hmacSign(byte[] key, byte[] source) throws CryptoException {
+		long start = CryptoMetrics.start();
 		try {
-			SecretKeySpec spec = new SecretKeySpec(key.getBytes(), "HmacSHA1");
-			Mac mac = Mac.getInstance("HmacSHA1");
-			mac.init(spec);
-			return mac.doFinal(source.getBytes("UTF-8"));
+			MacCache.Entry entry = MacCache.acquire("HmacSHA1", "HmacSHA1", key);
+			byte[] result = entry.getMac().doFinal(source);
+			MacCache.release(entry);
+			CryptoMetrics.success(CryptoOperation.HMAC, null, source.length, start);
+			return result;
 		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.HMAC, null, start);
 			throw new CryptoException("MAC creation error", e);
 		}
 	}
@@ -386,6 +1149,130 @@ public class Crypto {
 		return DigestUtils.sha256Hex(source);
 	}
 
+	/**
+	 * Calculate md5 hash function from data of given stream, stream is read to the end but not closed
+	 * @param source - source stream
+	 * @return result of hash function calculation
+	 * @throws CryptoException if error while reading stream occurred
+	 */
+	public static String toMD5(InputStream source) throws CryptoException {
+		return toHex(digest("MD5", source));
+	}
+
+	/**
+	 * Calculate SHA-1 hash function from data of given stream, stream is read to the end but not closed
+	 * @param source - source stream
+	 * @return result of hash function calculation
+	 * @throws CryptoException if error while reading stream occurred
+	 */
+	public static String toSHA1(InputStream source) throws CryptoException {
+		return toHex(digest("SHA-1", source));
+	}
+
+	/**
+	 * Calculate SHA-256 hash function from data of given stream, stream is read to the end but not closed
+	 * @param source - source stream
+	 * @return result of hash function calculation
+	 * @throws CryptoException if error while reading stream occurred
+	 */
+	public static String toSHA256(InputStream source) throws CryptoException {
+		return toHex(digest("SHA-256", source));
+	}
+
+	/**
+	 * Calculate hash function from data of given stream, stream is read to the end but not closed
+	 * @param algorithm - name of digest algorithm, e.g. "SHA-256"
+	 * @param source - source stream
+	 * @return digest bytes
+	 * @throws CryptoException if algorithm is not supported or error while reading stream occurred
+	 */
+	public static byte[] digest(String algorithm, InputStream source) throws CryptoException {
+		long start = CryptoMetrics.start();
+		MessageDigest digest = acquireDigest(algorithm, start);
+
+		try {
+			byte[] buf = new byte[BUFFER_SIZE];
+			long bytes = 0;
+			int count;
+			while ((count = source.read(buf)) > -1) {
+				bytes += count;
+				digest.update(buf, 0, count);
+			}
+			byte[] result = digest.digest();
+			CryptoMetrics.success(CryptoOperation.DIGEST, null, bytes, start);
+			return result;
+		} catch (IOException e) {
+			CryptoMetrics.failure(CryptoOperation.DIGEST, null, start);
+			throw new CryptoException("Error reading stream", e);
+		} finally {
+			DigestCache.release(digest);
+		}
+	}
+
+	/**
+	 * Calculate hash function from data of given channel (e.g. {@link FileChannel}), channel is read to the end but
+	 * not closed
+	 * @param algorithm - name of digest algorithm, e.g. "SHA-256"
+	 * @param source - source channel
+	 * @return digest bytes
+	 * @throws CryptoException if algorithm is not supported or error while reading channel occurred
+	 */
+	public static byte[] digest(String algorithm, ReadableByteChannel source) throws CryptoException {
+		long start = CryptoMetrics.start();
+		MessageDigest digest = acquireDigest(algorithm, start);
+
+		try {
+			ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+			long bytes = 0;
+			int count;
+			while ((count = source.read(buf)) > -1) {
+				bytes += count;
+				buf.flip();
+				digest.update(buf);
+				buf.clear();
+			}
+			byte[] result = digest.digest();
+			CryptoMetrics.success(CryptoOperation.DIGEST, null, bytes, start);
+			return result;
+		} catch (IOException e) {
+			CryptoMetrics.failure(CryptoOperation.DIGEST, null, start);
+			throw new CryptoException("Error reading channel", e);
+		} finally {
+			DigestCache.release(digest);
+		}
+	}
+
+	/**
+	 * Calculate hash function from remaining bytes of given buffer
+	 * @param algorithm - name of digest algorithm, e.g. "SHA-256"
+	 * @param source - source buffer, position is moved to its limit
+	 * @return digest bytes
+	 * @throws CryptoException if algorithm is not supported
+	 */
+	public static byte[] digest(String algorithm, ByteBuffer source) throws CryptoException {
+		long start = CryptoMetrics.start();
+		MessageDigest digest = acquireDigest(algorithm, start);
+
+		try {
+			int len = source.remaining();
+			digest.update(source);
+			byte[] result = digest.digest();
+			CryptoMetrics.success(CryptoOperation.DIGEST, null, len, start);
+			return result;
+		} finally {
+			DigestCache.release(digest);
+		}
+	}
+
+	private static MessageDigest acquireDigest(String algorithm, long start) throws CryptoException {
+		try {
+			return DigestCache.acquire(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			CryptoMetrics.failure(CryptoOperation.DIGEST, null, start);
+			throw new CryptoException("Unsupported digest algorithm " + algorithm, e);
+		}
+	}
+
 	/**
 	 * Decodes hex-string into original bytes
 	 * @param hexString - hex-encoded string
@@ -396,11 +1283,26 @@ public class Crypto {
 		if (hexString == null) {
 			return null;
 		}
+		String hex = safeTrim(hexString);
+		byte[] result = new byte[hex.length() / 2];
 		try {
-			return Hex.decodeHex(safeTrim(hexString).toCharArray());
-		} catch (DecoderException e) {
+			Codecs.decodeHex(hex, result, 0);
+		} catch (CryptoException e) {
 			throw new CryptoException("Error decoding hex-string", e);
 		}
+		return result;
+	}
+
+	/**
+	 * Decodes hex characters into output array
+	 * @param hex - hex-encoded characters
+	 * @param out - array for original bytes, must have room for <code>hex.length() / 2</code> bytes
+	 * @param outOff - offset in output array
+	 * @return count of bytes written
+	 * @throws CryptoException if hex characters are malformed
+	 */
+	public static int fromHex(CharSequence hex, byte[] out, int outOff) throws CryptoException {
+		return Codecs.decodeHex(hex, out, outOff);
 	}
 
 	/**
@@ -409,7 +1311,31 @@ public class Crypto {
 	 * @return encoded string
 	 */
 	public static String toHex(byte[] data) {
-		return Hex.encodeHexString(data);
+		char[] chars = new char[data.length * 2];
+		Codecs.encodeHex(data, 0, data.length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Encodes portion of array to hex characters of output array
+	 * @param data - bytes to encode
+	 * @param off - offset of bytes to encode
+	 * @param len - length of bytes to encode
+	 * @param out - array for characters, must have room for <code>len * 2</code> characters
+	 * @param outOff - offset in output array
+	 * @return count of characters written
+	 */
+	public static int toHex(byte[] data, int off, int len, char[] out, int outOff) {
+		return Codecs.encodeHex(data, off, len, out, outOff);
+	}
+
+	/**
+	 * Encodes given bytes to hex characters of output buffer
+	 * @param data - bytes to encode
+	 * @param out - buffer for characters, must have <code>data.length * 2</code> characters remaining
+	 */
+	public static void toHex(byte[] data, CharBuffer out) {
+		Codecs.encodeHex(data, 0, data.length, out);
 	}
 
 	private static byte[] xor(byte[] b1, byte[] b2) {
@@ -0,0 +1,238 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+
+/**
+ * Encrypts/Decrypts batches of small payloads with the same key.<br>
+ * Payloads are processed back to back by a cipher initialized once per thread. If executor is specified, batch is
+ * split into chunks processed concurrently, results are always returned in order of payloads.
+ */
+public class CryptoBatch {
+
+	private static final int DEFAULT_CHUNK_SIZE = 256;
+
+	private ExecutorService executor;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * Results storage of batch
+	 */
+	private static class Results {
+
+		private final byte[][] values;
+		private final byte[] arena;
+		private final int[] offsets;
+		private final int[] lengths;
+
+		Results(int size) {
+			values = new byte[size][];
+			arena = null;
+			offsets = null;
+			lengths = null;
+		}
+
+		Results(byte[] arena, int[] offsets) {
+			values = null;
+			this.arena = arena;
+			this.offsets = offsets;
+			lengths = new int[offsets.length];
+		}
+	}
+
+	/**
+	 * Encrypts payloads with given secret key
+	 * @param payloads - arrays for encrypt
+	 * @param key - secret key package
+	 * @return encrypted bytes in order of payloads
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public List<byte[]> encrypt(List<byte[]> payloads, RawKeyPackage key) throws CryptoException {
+		return process(payloads, key, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * Decrypts payloads with given secret key
+	 * @param payloads - arrays of encrypted data
+	 * @param key - secret key package
+	 * @return original bytes in order of payloads
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public List<byte[]> decrypt(List<byte[]> payloads, RawKeyPackage key) throws CryptoException {
+		return process(payloads, key, Cipher.DECRYPT_MODE);
+	}
+
+	/**
+	 * Encrypts payloads with given secret key into caller-supplied arena. Results are stored one after another, result
+	 * of payload <code>i</code> occupies bytes from <code>offsets[i]</code> to <code>offsets[i + 1]</code>
+	 * @param payloads - arrays for encrypt
+	 * @param key - secret key package
+	 * @param arena - array for encrypted bytes, must have room for {@link #arenaSize(List, RawKeyPackage, int)} bytes
+	 * @param arenaOff - offset of first result in arena
+	 * @return <code>offsets</code> array with size of payloads count plus one
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public int[] encrypt(List<byte[]> payloads, RawKeyPackage key, byte[] arena, int arenaOff)
+			throws CryptoException {
+		return process(payloads, key, Cipher.ENCRYPT_MODE, arena, arenaOff);
+	}
+
+	/**
+	 * Decrypts payloads with given secret key into caller-supplied arena. Results are stored one after another, result
+	 * of payload <code>i</code> occupies bytes from <code>offsets[i]</code> to <code>offsets[i + 1]</code>
+	 * @param payloads - arrays of encrypted data
+	 * @param key - secret key package
+	 * @param arena - array for original bytes, must have room for {@link #arenaSize(List, RawKeyPackage, int)} bytes
+	 * @param arenaOff - offset of first result in arena
+	 * @return <code>offsets</code> array with size of payloads count plus one
+	 * @throws CryptoException if any cryptographic error occurred
+	 */
+	public int[] decrypt(List<byte[]> payloads, RawKeyPackage key, byte[] arena, int arenaOff)
+			throws CryptoException {
+		return process(payloads, key, Cipher.DECRYPT_MODE, arena, arenaOff);
+	}
+
+	/**
+	 * Calculates arena size enough for processing of given payloads
+	 * @param payloads - arrays to be processed
+	 * @param key - secret key package
+	 * @param mode - mode: Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
+	 * @return size of arena in bytes
+	 */
+	public static int arenaSize(List<byte[]> payloads, RawKeyPackage key, int mode) {
+		long size = 0;
+		for (byte[] payload : payloads) {
+			size += Crypto.outputSize(key, mode, payload.length);
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Batch is too large for single arena");
+		}
+		return (int) size;
+	}
+
+	private List<byte[]> process(List<byte[]> payloads, RawKeyPackage key, int mode) throws CryptoException {
+		Results results = new Results(payloads.size());
+		run(payloads, key, mode, results);
+		return Arrays.asList(results.values);
+	}
+
+	private int[] process(List<byte[]> payloads, RawKeyPackage key, int mode, byte[] arena, int arenaOff)
+			throws CryptoException {
+		int size = payloads.size();
+		if (arena.length - arenaOff < arenaSize(payloads, key, mode)) {
+			throw new IllegalArgumentException("Arena is too small for batch");
+		}
+
+		// every payload gets slot of maximal output size, so chunks can be written concurrently
+		int[] slots = new int[size];
+		int offset = arenaOff;
+		for (int i = 0; i < size; i++) {
+			slots[i] = offset;
+			offset += Crypto.outputSize(key, mode, payloads.get(i).length);
+		}
+
+		Results results = new Results(arena, slots);
+		run(payloads, key, mode, results);
+
+		// close gaps left by slots larger than real output
+		int[] offsets = new int[size + 1];
+		offsets[0] = arenaOff;
+		for (int i = 0; i < size; i++) {
+			if (slots[i] != offsets[i]) {
+				System.arraycopy(arena, slots[i], arena, offsets[i], results.lengths[i]);
+			}
+			offsets[i + 1] = offsets[i] + results.lengths[i];
+		}
+		return offsets;
+	}
+
+	private void run(final List<byte[]> payloads, final RawKeyPackage key, final int mode, final Results results)
+			throws CryptoException {
+		int size = payloads.size();
+		if (executor == null || size <= chunkSize) {
+			processChunk(payloads, key, mode, results, 0, size);
+			return;
+		}
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(size / chunkSize + 1);
+		for (int from = 0; from < size; from += chunkSize) {
+			final int start = from;
+			final int end = Math.min(from + chunkSize, size);
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					processChunk(payloads, key, mode, results, start, end);
+					return null;
+				}
+			}));
+		}
+
+		CryptoException error = null;
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (error == null) {
+					error = e.getCause() instanceof CryptoException ? (CryptoException) e.getCause()
+							: new CryptoException("Error processing batch", e.getCause());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<Void> f : futures) {
+					f.cancel(true);
+				}
+				throw new CryptoException("Batch processing interrupted", e);
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	private static void processChunk(List<byte[]> payloads, RawKeyPackage key, int mode, Results results, int from,
+			int to) throws CryptoException {
+		CipherCache.Slot slot = CipherCache.acquire(key, mode);
+		int i = from;
+
+		try {
+			for (; i < to; i++) {
+				byte[] payload = payloads.get(i);
+				if (results.values != null) {
+					results.values[i] = Crypto.doFinal(slot, key, mode, payload, 0, payload.length);
+				} else {
+					results.lengths[i] = Crypto.doFinal(slot, key, mode, payload, 0, payload.length, results.arena,
+							results.offsets[i]);
+				}
+			}
+			CipherCache.release(slot);
+		} catch (Exception e) {
+			CipherCache.discard(slot);
+			throw new CryptoException("Error processing payload #" + i, e);
+		}
+	}
+
+	/**
+	 * @param executor the executor to set, batches are processed in caller thread if not specified
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param chunkSize the chunkSize to set, count of payloads processed by one task of executor
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+}
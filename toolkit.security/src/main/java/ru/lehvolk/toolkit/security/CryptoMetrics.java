@@ -0,0 +1,388 @@
+package ru.lehvolk.toolkit.security;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Optional instrumentation of toolkit operations: counts, processed bytes, failures and latency histograms per
+ * {@link CryptoOperation} and {@link KeyType}.<br>
+ * Metrics are disabled by default, disabled instrumentation costs a single volatile read per operation. Recorded data
+ * is available as {@link Stats} snapshots, through JMX after {@link #registerMBean()} and through {@link Listener}
+ * receiving every recorded operation.
+ */
+public final class CryptoMetrics {
+
+	/** name of registered MBean */
+	public static final String OBJECT_NAME = "ru.lehvolk.toolkit.security:type=CryptoMetrics";
+
+	private static final int KEY_TYPES = KeyType.values().length + 1;
+	// start value of operations while metrics are disabled, System.nanoTime() may return any other value
+	private static final long DISABLED = Long.MIN_VALUE;
+
+	/**
+	 * Receives recorded operations, called in thread performed the operation so it must be fast
+	 */
+	public static interface Listener {
+
+		/**
+		 * @param operation - {@link CryptoOperation}
+		 * @param type - {@link KeyType} or null if operation doesn't use key type
+		 * @param bytes - count of processed bytes
+		 * @param nanos - duration in nanoseconds
+		 * @param failed - true if operation failed
+		 */
+		public void operationCompleted(CryptoOperation operation, KeyType type, long bytes, long nanos, boolean failed);
+	}
+
+	/**
+	 * Snapshot of metrics of one operation and key type
+	 */
+	public static class Stats {
+
+		private final CryptoOperation operation;
+		private final KeyType type;
+		private final long count;
+		private final long failures;
+		private final long bytes;
+		private final long totalNanos;
+		private final long[] buckets;
+
+		Stats(CryptoOperation operation, KeyType type, long count, long failures, long bytes, long totalNanos,
+				long[] buckets) {
+			this.operation = operation;
+			this.type = type;
+			this.count = count;
+			this.failures = failures;
+			this.bytes = bytes;
+			this.totalNanos = totalNanos;
+			this.buckets = buckets;
+		}
+
+		/**
+		 * @return the operation
+		 */
+		public CryptoOperation getOperation() {
+			return operation;
+		}
+
+		/**
+		 * @return the type, null for operations without key type
+		 */
+		public KeyType getType() {
+			return type;
+		}
+
+		/**
+		 * @return the count of operations including failed ones
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the failures
+		 */
+		public long getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return the bytes processed by successful operations
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return the total duration of operations in nanoseconds
+		 */
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		/**
+		 * @return mean duration of operation in nanoseconds
+		 */
+		public double getMeanNanos() {
+			return count == 0 ? 0 : (double) totalNanos / count;
+		}
+
+		/**
+		 * @param percentile - percentile from 0 to 100
+		 * @return upper bound of duration percentile in nanoseconds, precise up to power of two
+		 */
+		public long getPercentileNanos(double percentile) {
+			long total = 0;
+			for (long bucket : buckets) {
+				total += bucket;
+			}
+			long rank = (long) Math.ceil(total * percentile / 100);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank && seen > 0) {
+					return LatencyHistogram.upperBound(i);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * @return name of operation as used by {@link CryptoMetricsMBean}
+		 */
+		public String getName() {
+			return type == null ? operation.name() : operation.name() + "/" + type.name();
+		}
+	}
+
+	/**
+	 * Live metrics of one operation and key type
+	 */
+	private static final class Cell {
+
+		private final StripedCounter count = new StripedCounter();
+		private final StripedCounter bytes = new StripedCounter();
+		private final StripedCounter nanos = new StripedCounter();
+		private final AtomicLong failures = new AtomicLong();
+		private final LatencyHistogram latency = new LatencyHistogram();
+	}
+
+	/**
+	 * {@link CryptoMetricsMBean} implementation over static metrics
+	 */
+	private static final class View implements CryptoMetricsMBean {
+
+		@Override
+		public boolean isEnabled() {
+			return CryptoMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			CryptoMetrics.setEnabled(enabled);
+		}
+
+		@Override
+		public String[] getOperations() {
+			List<Stats> stats = getAllStats();
+			String[] names = new String[stats.size()];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = stats.get(i).getName();
+			}
+			return names;
+		}
+
+		@Override
+		public long getCount(String operation) {
+			return stats(operation).getCount();
+		}
+
+		@Override
+		public long getFailures(String operation) {
+			return stats(operation).getFailures();
+		}
+
+		@Override
+		public long getBytes(String operation) {
+			return stats(operation).getBytes();
+		}
+
+		@Override
+		public double getMeanLatencyMicros(String operation) {
+			return stats(operation).getMeanNanos() / 1000;
+		}
+
+		@Override
+		public double getLatencyPercentileMicros(String operation, double percentile) {
+			return stats(operation).getPercentileNanos(percentile) / 1000d;
+		}
+
+		@Override
+		public void reset() {
+			CryptoMetrics.reset();
+		}
+
+		private static Stats stats(String name) {
+			int separator = name.indexOf('/');
+			if (separator < 0) {
+				return getStats(CryptoOperation.valueOf(name), null);
+			}
+			return getStats(CryptoOperation.valueOf(name.substring(0, separator)),
+					KeyType.valueOf(name.substring(separator + 1)));
+		}
+	}
+
+	private static final AtomicReferenceArray<Cell> CELLS =
+			new AtomicReferenceArray<Cell>(CryptoOperation.values().length * KEY_TYPES);
+
+	private static volatile boolean enabled;
+	private static volatile Listener listener;
+
+	private CryptoMetrics() {
+	}
+
+	/**
+	 * Marks beginning of operation
+	 * @return start time of operation or {@link Long#MIN_VALUE} if metrics are disabled
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : DISABLED;
+	}
+
+	/**
+	 * Records successful operation
+	 * @param operation - {@link CryptoOperation}
+	 * @param type - {@link KeyType} or null if operation doesn't use key type
+	 * @param bytes - count of processed bytes
+	 * @param start - value returned by {@link #start()}
+	 */
+	public static void success(CryptoOperation operation, KeyType type, long bytes, long start) {
+		if (start != DISABLED) {
+			record(operation, type, bytes, start, false);
+		}
+	}
+
+	/**
+	 * Records failed operation
+	 * @param operation - {@link CryptoOperation}
+	 * @param type - {@link KeyType} or null if operation doesn't use key type
+	 * @param start - value returned by {@link #start()}
+	 */
+	public static void failure(CryptoOperation operation, KeyType type, long start) {
+		if (start != DISABLED) {
+			record(operation, type, 0, start, true);
+		}
+	}
+
+	private static void record(CryptoOperation operation, KeyType type, long bytes, long start, boolean failed) {
+		long nanos = System.nanoTime() - start;
+		Cell cell = cell(operation, type);
+		cell.count.add(1);
+		cell.nanos.add(nanos);
+		cell.latency.record(nanos);
+		if (failed) {
+			cell.failures.incrementAndGet();
+		} else {
+			cell.bytes.add(bytes);
+		}
+		Listener current = listener;
+		if (current != null) {
+			current.operationCompleted(operation, type, bytes, nanos, failed);
+		}
+	}
+
+	private static Cell cell(CryptoOperation operation, KeyType type) {
+		int index = index(operation, type);
+		Cell cell = CELLS.get(index);
+		if (cell == null) {
+			CELLS.compareAndSet(index, null, new Cell());
+			cell = CELLS.get(index);
+		}
+		return cell;
+	}
+
+	private static int index(CryptoOperation operation, KeyType type) {
+		return operation.ordinal() * KEY_TYPES + (type == null ? 0 : type.ordinal() + 1);
+	}
+
+	/**
+	 * @param operation - {@link CryptoOperation}
+	 * @param type - {@link KeyType} or null for operations without key type
+	 * @return snapshot of metrics
+	 */
+	public static Stats getStats(CryptoOperation operation, KeyType type) {
+		Cell cell = CELLS.get(index(operation, type));
+		if (cell == null) {
+			return new Stats(operation, type, 0, 0, 0, 0, new long[LatencyHistogram.BUCKETS]);
+		}
+		return new Stats(operation, type, cell.count.sum(), cell.failures.get(), cell.bytes.sum(), cell.nanos.sum(),
+				cell.latency.snapshot());
+	}
+
+	/**
+	 * @return snapshots of all recorded operations
+	 */
+	public static List<Stats> getAllStats() {
+		List<Stats> result = new ArrayList<Stats>();
+		for (CryptoOperation operation : CryptoOperation.values()) {
+			if (CELLS.get(index(operation, null)) != null) {
+				result.add(getStats(operation, null));
+			}
+			for (KeyType type : KeyType.values()) {
+				if (CELLS.get(index(operation, type)) != null) {
+					result.add(getStats(operation, type));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Zeroes all metrics
+	 */
+	public static void reset() {
+		for (int i = 0; i < CELLS.length(); i++) {
+			CELLS.set(i, null);
+		}
+	}
+
+	/**
+	 * @return true if metrics are recorded
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled - true to record metrics, disabled by default
+	 */
+	public static void setEnabled(boolean enabled) {
+		CryptoMetrics.enabled = enabled;
+	}
+
+	/**
+	 * @param listener - {@link Listener} of recorded operations, null to remove
+	 */
+	public static void setListener(Listener listener) {
+		CryptoMetrics.listener = listener;
+	}
+
+	/**
+	 * Registers {@link CryptoMetricsMBean} in platform MBean server under {@link #OBJECT_NAME}
+	 * @throws CryptoException if MBean can't be registered
+	 */
+	public static void registerMBean() throws CryptoException {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new StandardMBean(new View(), CryptoMetricsMBean.class), name);
+			}
+		} catch (Exception e) {
+			throw new CryptoException("Can't register metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Unregisters {@link CryptoMetricsMBean} from platform MBean server
+	 * @throws CryptoException if MBean can't be unregistered
+	 */
+	public static void unregisterMBean() throws CryptoException {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (Exception e) {
+			throw new CryptoException("Can't unregister metrics MBean", e);
+		}
+	}
+}
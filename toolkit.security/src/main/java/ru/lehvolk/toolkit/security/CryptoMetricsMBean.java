@@ -0,0 +1,59 @@
+package ru.lehvolk.toolkit.security;
+
+/**
+ * JMX view of {@link CryptoMetrics}, operations are named as <code>OPERATION/KEY_TYPE</code> or
+ * <code>OPERATION</code> for operations without key type, e.g. <code>ENCRYPT/AES</code>, <code>DIGEST</code>
+ */
+public interface CryptoMetricsMBean {
+
+	/**
+	 * @return true if metrics are recorded
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * @param enabled - true to record metrics
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * @return names of recorded operations
+	 */
+	public String[] getOperations();
+
+	/**
+	 * @param operation - name of operation
+	 * @return count of operations including failed ones
+	 */
+	public long getCount(String operation);
+
+	/**
+	 * @param operation - name of operation
+	 * @return count of failed operations
+	 */
+	public long getFailures(String operation);
+
+	/**
+	 * @param operation - name of operation
+	 * @return count of processed bytes
+	 */
+	public long getBytes(String operation);
+
+	/**
+	 * @param operation - name of operation
+	 * @return mean latency in microseconds
+	 */
+	public double getMeanLatencyMicros(String operation);
+
+	/**
+	 * @param operation - name of operation
+	 * @param percentile - percentile from 0 to 100
+	 * @return upper bound of latency percentile in microseconds
+	 */
+	public double getLatencyPercentileMicros(String operation, double percentile);
+
+	/**
+	 * Zeroes all metrics
+	 */
+	public void reset();
+}
@@ -0,0 +1,38 @@
+package ru.lehvolk.toolkit.security;
+
+/**
+ * Represents kind of operation recorded by {@link CryptoMetrics}
+ */
+public enum CryptoOperation {
+
+	/** in-memory encryption */
+	ENCRYPT,
+	/** in-memory decryption */
+	DECRYPT,
+	/** encryption of stream or channel */
+	ENCRYPT_STREAM,
+	/** decryption of stream or channel */
+	DECRYPT_STREAM,
+	/** encryption of file */
+	ENCRYPT_FILE,
+	/** decryption of file */
+	DECRYPT_FILE,
+	/** MAC creation */
+	MAC,
+	/** HMAC creation */
+	HMAC,
+	/** digest calculation */
+	DIGEST,
+	/** secret key generation */
+	GENERATE_KEY,
+	/** PGP encryption */
+	PGP_ENCRYPT,
+	/** PGP decryption */
+	PGP_DECRYPT,
+	/** creation of detached PGP signature */
+	PGP_SIGN,
+	/** verification of detached PGP signature */
+	PGP_VERIFY,
+	/** SSLContext creation */
+	SSL_CONTEXT
+}
@@ -0,0 +1,44 @@
+package ru.lehvolk.toolkit.security;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-thread cache of {@link MessageDigest} instances.<br>
+ * Acquired digest is removed from the cache until released, so nested usage in the same thread gets its own
+ * instance.
+ */
+final class DigestCache {
+
+	private static final ThreadLocal<Map<String, MessageDigest>> CACHE = new ThreadLocal<Map<String, MessageDigest>>() {
+
+		@Override
+		protected Map<String, MessageDigest> initialValue() {
+			return new HashMap<String, MessageDigest>();
+		}
+	};
+
+	private DigestCache() {
+	}
+
+	/**
+	 * @param algorithm - name of digest algorithm
+	 * @return digest ready for update
+	 * @throws NoSuchAlgorithmException if algorithm is not supported
+	 */
+	static MessageDigest acquire(String algorithm) throws NoSuchAlgorithmException {
+		MessageDigest digest = CACHE.get().remove(algorithm);
+		return digest != null ? digest : MessageDigest.getInstance(algorithm);
+	}
+
+	/**
+	 * Resets digest and returns it to the cache
+	 * @param digest - acquired digest
+	 */
+	static void release(MessageDigest digest) {
+		digest.reset();
+		CACHE.get().put(digest.getAlgorithm(), digest);
+	}
+}
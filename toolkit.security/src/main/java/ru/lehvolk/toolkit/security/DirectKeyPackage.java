@@ -0,0 +1,161 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+import javax.security.auth.Destroyable;
+
+/**
+ * Secret "process" key kept in direct memory outside of java heap.<br>
+ * Only the package itself is kept out of heap: providers call {@link SecretKey#getEncoded()} on every cipher or MAC
+ * initialization (every GCM operation and every cache miss), each call returns a new heap copy of key which
+ * provider keeps together with its key schedule and which can't be wiped by the package. Cipher and MAC caches hold
+ * the package, not copies of key bytes. {@link #getKey()} returns a copy which should be wiped by caller.<br>
+ * {@link #destroy()} zeroes key memory and drops ciphers and MACs of current thread initialized with the package,
+ * destroyed package can't be used anymore. Other threads which have used the package should call
+ * {@link Crypto#clearCipherCache()}.
+ */
+public class DirectKeyPackage extends RawKeyPackage implements Destroyable {
+
+	/**
+	 * {@link SecretKey} backed by key memory of the package
+	 */
+	private static final class DirectSecretKey implements SecretKey {
+
+		private static final long serialVersionUID = -3915297432741206410L;
+
+		private final transient DirectKeyPackage owner;
+
+		DirectSecretKey(DirectKeyPackage owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public String getAlgorithm() {
+			return owner.getType().getAlias();
+		}
+
+		@Override
+		public String getFormat() {
+			return "RAW";
+		}
+
+		@Override
+		public byte[] getEncoded() {
+			return owner.getKey();
+		}
+
+		// Destroyable methods, SecretKey extends Destroyable since Java 8
+		public void destroy() {
+			owner.destroy();
+		}
+
+		public boolean isDestroyed() {
+			return owner.isDestroyed();
+		}
+
+		private void writeObject(ObjectOutputStream out) throws NotSerializableException {
+			throw new NotSerializableException("Direct key can't be serialized");
+		}
+	}
+
+	private final ByteBuffer key;
+	private final byte[] iv;
+	private final SecretKey keySpec = new DirectSecretKey(this);
+	private volatile boolean destroyed;
+
+	/**
+	 * Constructs instance copying key bytes to direct memory, {@link CipherMode#CBC} is used
+	 *
+	 * @param key - secret key byte array, may be wiped by caller after construction
+	 * @param iv - initialization vector byte array
+	 * @param type - type of key
+	 */
+	public DirectKeyPackage(byte[] key, byte[] iv, KeyType type) {
+		this(key, iv, type, CipherMode.CBC);
+	}
+
+	/**
+	 * Constructs instance copying key bytes to direct memory
+	 *
+	 * @param key - secret key byte array, may be wiped by caller after construction
+	 * @param iv - initialization vector byte array, not used by {@link CipherMode#GCM}
+	 * @param type - type of key
+	 * @param mode - mode of cipher
+	 */
+	public DirectKeyPackage(byte[] key, byte[] iv, KeyType type, CipherMode mode) {
+		super(type, mode);
+		if (key == null || iv == null) {
+			throw new IllegalArgumentException("All arguments are mandatory!");
+		}
+
+		this.key = ByteBuffer.allocateDirect(key.length);
+		this.key.put(key);
+		this.iv = iv.clone();
+	}
+
+	/**
+	 * Constructs instance copying key material of given package to direct memory
+	 *
+	 * @param source - {@link RawKeyPackage}
+	 */
+	public DirectKeyPackage(RawKeyPackage source) {
+		this(source.getKey(), source.getIv(), source.getType(), source.getMode());
+	}
+
+	/**
+	 * @return copy of the key
+	 * @throws IllegalStateException if package is destroyed
+	 */
+	@Override
+	public byte[] getKey() {
+		checkDestroyed();
+		byte[] result = new byte[key.capacity()];
+		ByteBuffer view = key.duplicate();
+		view.clear();
+		view.get(result);
+		return result;
+	}
+
+	/**
+	 * @return the iv
+	 */
+	@Override
+	public byte[] getIv() {
+		return iv;
+	}
+
+	@Override
+	SecretKey getKeySpec() {
+		checkDestroyed();
+		return keySpec;
+	}
+
+	/**
+	 * Zeroes key memory and drops ciphers and MACs of current thread initialized with the package
+	 */
+	@Override
+	public void destroy() {
+		destroyed = true;
+		for (int i = 0, len = key.capacity(); i < len; i++) {
+			key.put(i, (byte) 0);
+		}
+		Arrays.fill(iv, (byte) 0);
+		CipherCache.forget(this);
+		MacCache.forget(this);
+	}
+
+	@Override
+	public boolean isDestroyed() {
+		return destroyed;
+	}
+
+	private void checkDestroyed() {
+		if (destroyed) {
+			throw new IllegalStateException("Key package is destroyed");
+		}
+	}
+}
@@ -0,0 +1,401 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Cipher;
+
+/**
+ * Encrypts/Decrypts every regular file of directory tree into mirrored destination tree.<br>
+ * Symbolic links are followed, entries which are not regular files (e.g. broken links or links looping the tree) are
+ * reported in {@link Result}. Files are processed concurrently, every worker thread reuses its cipher between files.
+ * Failure of one file doesn't stop processing of others, failures are collected in {@link Result}.<br>
+ * If manifest file is specified, relative path of every completed file is appended to it, files listed in manifest
+ * are skipped, so interrupted processing can be resumed with the same manifest. Manifest starts with line identifying
+ * direction and key of processing, manifest written with another direction or key is rejected.
+ */
+public class DirectoryCrypto {
+
+	private static final String MANIFEST_CHARSET = "UTF-8";
+
+	/**
+	 * Receives progress of processing, methods are called from worker threads
+	 */
+	public static interface Listener {
+
+		/**
+		 * @param source - processed file
+		 * @param dest - produced file
+		 * @param completed - count of files completed so far including skipped ones
+		 * @param total - count of files in source tree
+		 */
+		public void fileCompleted(File source, File dest, int completed, int total);
+
+		/**
+		 * @param source - failed file
+		 * @param error - error of processing
+		 */
+		public void fileFailed(File source, CryptoException error);
+	}
+
+	/**
+	 * Result of directory tree processing
+	 */
+	public static class Result {
+
+		private final int total;
+		private final int skipped;
+		private final int processed;
+		private final long bytes;
+		private final Map<String, CryptoException> failures;
+		private final List<String> ignored;
+
+		Result(int total, int skipped, int processed, long bytes, Map<String, CryptoException> failures,
+				List<String> ignored) {
+			this.total = total;
+			this.skipped = skipped;
+			this.processed = processed;
+			this.bytes = bytes;
+			this.failures = Collections.unmodifiableMap(failures);
+			this.ignored = Collections.unmodifiableList(ignored);
+		}
+
+		/**
+		 * @return the total, count of files in source tree
+		 */
+		public int getTotal() {
+			return total;
+		}
+
+		/**
+		 * @return the skipped, count of files already listed in manifest
+		 */
+		public int getSkipped() {
+			return skipped;
+		}
+
+		/**
+		 * @return the processed, count of successfully processed files
+		 */
+		public int getProcessed() {
+			return processed;
+		}
+
+		/**
+		 * @return the bytes, size of successfully processed source files
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return the failures, errors by relative path of source file
+		 */
+		public Map<String, CryptoException> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return the ignored, relative paths of entries which are not regular files, not counted in total
+		 */
+		public List<String> getIgnored() {
+			return ignored;
+		}
+
+		/**
+		 * @return true if all files are processed
+		 */
+		public boolean isSuccessful() {
+			return failures.isEmpty();
+		}
+	}
+
+	/**
+	 * Appends completed paths to manifest, one per line after header line
+	 */
+	private static class Manifest {
+
+		private final Writer writer;
+
+		Manifest(File file, String header) throws IOException {
+			boolean empty = file.length() == 0;
+			writer = new OutputStreamWriter(new FileOutputStream(file, true), MANIFEST_CHARSET);
+			if (empty) {
+				append(header);
+			}
+		}
+
+		synchronized void append(String path) throws IOException {
+			writer.write(path);
+			writer.write('\n');
+			writer.flush();
+		}
+
+		void close() {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+
+		static Set<String> read(File file, String header) throws IOException, CryptoException {
+			Set<String> paths = new HashSet<String>();
+			if (file.length() == 0) {
+				return paths;
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+					MANIFEST_CHARSET));
+			try {
+				String line = reader.readLine();
+				if (!header.equals(line)) {
+					throw new CryptoException("Manifest " + file + " is written with another key or direction");
+				}
+				while ((line = reader.readLine()) != null) {
+					// last line may be incomplete after crash, such file is processed again
+					if (!line.isEmpty()) {
+						paths.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			return paths;
+		}
+	}
+
+	private ExecutorService executor;
+	private int parallelism;
+	private FileProcessing processing = FileProcessing.CHANNEL;
+	private File manifest;
+	private Listener listener;
+
+	/**
+	 * Encrypts files of source tree into destination tree
+	 * @param sourceDir - directory with clear files
+	 * @param destDir - directory for encrypted files, created if absent
+	 * @param key - secret key
+	 * @return {@link Result} of processing
+	 * @throws CryptoException if directory tree can't be read or manifest can't be used
+	 */
+	public Result encryptTree(File sourceDir, File destDir, RawKeyPackage key) throws CryptoException {
+		return process(sourceDir, destDir, key, Cipher.ENCRYPT_MODE);
+	}
+
+	/**
+	 * Decrypts files of source tree into destination tree
+	 * @param sourceDir - directory with encrypted files
+	 * @param destDir - directory for clear files, created if absent
+	 * @param key - secret key
+	 * @return {@link Result} of processing
+	 * @throws CryptoException if directory tree can't be read or manifest can't be used
+	 */
+	public Result decryptTree(File sourceDir, File destDir, RawKeyPackage key) throws CryptoException {
+		return process(sourceDir, destDir, key, Cipher.DECRYPT_MODE);
+	}
+
+	private Result process(File sourceDir, File destDir, final RawKeyPackage key, final int mode)
+			throws CryptoException {
+		final List<Path> files = new ArrayList<Path>();
+		final List<String> ignored = new ArrayList<String>();
+		final Set<String> done;
+		final Manifest log;
+		try {
+			listFiles(sourceDir.toPath(), files, ignored);
+			String header = manifest != null ? header(key, mode) : null;
+			done = manifest != null ? Manifest.read(manifest, header) : Collections.<String> emptySet();
+			log = manifest != null ? new Manifest(manifest, header) : null;
+		} catch (IOException e) {
+			throw new CryptoException("Error reading directory tree", e);
+		}
+
+		final int total = files.size();
+		final AtomicInteger completed = new AtomicInteger();
+		final AtomicLong bytes = new AtomicLong();
+		final Path sourceRoot = sourceDir.toPath();
+		final Path destRoot = destDir.toPath();
+
+		Map<String, Callable<Void>> tasks = new LinkedHashMap<String, Callable<Void>>();
+		int skipped = 0;
+		try {
+			for (final Path path : files) {
+				final String name = relativeName(sourceRoot, path);
+				if (done.contains(name)) {
+					skipped++;
+					completed.incrementAndGet();
+					continue;
+				}
+				tasks.put(name, new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						File source = path.toFile();
+						File dest = destRoot.resolve(sourceRoot.relativize(path)).toFile();
+						try {
+							processFile(source, dest, key, mode, log, name);
+						} catch (Exception e) {
+							CryptoException error = ForkJoinPools.failure(e, "Error processing file " + name);
+							if (listener != null) {
+								listener.fileFailed(source, error);
+							}
+							throw error;
+						}
+						bytes.addAndGet(source.length());
+						int count = completed.incrementAndGet();
+						if (listener != null) {
+							listener.fileCompleted(source, dest, count, total);
+						}
+						return null;
+					}
+				});
+			}
+			Map<String, CryptoException> failures = new LinkedHashMap<String, CryptoException>();
+			ForkJoinPools.invokeAll(executor, parallelism, tasks, new LinkedHashMap<String, Void>(), failures,
+					"Error processing file ", "Directory processing interrupted");
+			return new Result(total, skipped, tasks.size() - failures.size(), bytes.get(), failures, ignored);
+		} finally {
+			if (log != null) {
+				log.close();
+			}
+		}
+	}
+
+	private void processFile(File source, File dest, RawKeyPackage key, int mode, Manifest log, String name)
+			throws CryptoException {
+		File parent = dest.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+			throw new CryptoException("Can't create directory " + parent);
+		}
+		if (mode == Cipher.ENCRYPT_MODE) {
+			Crypto.encryptFile(source, dest, key, processing);
+		} else {
+			Crypto.decryptFile(source, dest, key, processing);
+		}
+		if (log != null) {
+			try {
+				log.append(name);
+			} catch (IOException e) {
+				throw new CryptoException("Error writing manifest", e);
+			}
+		}
+	}
+
+	private static void listFiles(final Path root, final List<Path> files, final List<String> ignored)
+			throws IOException {
+		// attributes of links are followed, broken link is visited with attributes of link itself
+		Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+				new SimpleFileVisitor<Path>() {
+
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+						if (attrs.isRegularFile()) {
+							files.add(file);
+						} else {
+							ignored.add(relativeName(root, file));
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+						if (e instanceof FileSystemLoopException) {
+							ignored.add(relativeName(root, file));
+							return FileVisitResult.CONTINUE;
+						}
+						throw e;
+					}
+				});
+	}
+
+	// identifies direction and key without revealing key, digest is truncated
+	private static String header(RawKeyPackage key, int mode) throws CryptoException {
+		byte[] raw = key.getKey();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(key.getType().name().getBytes(MANIFEST_CHARSET));
+			digest.update((byte) key.getMode().ordinal());
+			digest.update(raw);
+			digest.update(key.getIv());
+			return (mode == Cipher.ENCRYPT_MODE ? "#encrypt " : "#decrypt ")
+					+ Crypto.toHex(Arrays.copyOf(digest.digest(), 8));
+		} catch (Exception e) {
+			throw new CryptoException("Error identifying key of manifest", e);
+		} finally {
+			if (key instanceof DirectKeyPackage) {
+				Arrays.fill(raw, (byte) 0);
+			}
+		}
+	}
+
+	// manifest entries use '/' separator independently of platform
+	private static String relativeName(Path root, Path file) {
+		return root.relativize(file).toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * @param executor the executor to set, e.g. cached thread pool for slow storage; overrides parallelism
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param parallelism the parallelism to set, count of files processed concurrently; shared pool with parallelism
+	 * of available processors is used by default
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param processing the processing to set, {@link FileProcessing#CHANNEL} by default
+	 */
+	public void setProcessing(FileProcessing processing) {
+		this.processing = processing;
+	}
+
+	/**
+	 * @param manifest the manifest to set, file of completed relative paths used to resume processing with the same
+	 * key and direction
+	 */
+	public void setManifest(File manifest) {
+		this.manifest = manifest;
+	}
+
+	/**
+	 * @param listener the listener to set, receives progress of processing
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+}
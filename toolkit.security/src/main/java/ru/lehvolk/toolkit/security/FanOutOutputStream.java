@@ -0,0 +1,167 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Stream writing the same data to several sinks concurrently.<br>
+ * Data is collected into chunks, every chunk is written to all sinks by tasks of executor while next chunk is
+ * collected. Chunks are written to a sink in order, failed sink is skipped and its failure is kept, so other sinks are
+ * not affected. Tasks never wait for each other, so any executor may be used.
+ */
+final class FanOutOutputStream extends OutputStream {
+
+	private final List<OutputStream> sinks;
+	private final IOException[] failures;
+	private final ExecutorService executor;
+	private final byte[][] buffers;
+	private final List<Future<?>> pending = new ArrayList<Future<?>>();
+	private int current;
+	private int count;
+	private boolean closed;
+
+	/**
+	 * @param sinks - streams to write data to, closed when this stream is closed
+	 * @param executor - {@link ExecutorService} writing chunks
+	 * @param chunkSize - size of chunk
+	 */
+	FanOutOutputStream(List<OutputStream> sinks, ExecutorService executor, int chunkSize) {
+		this.sinks = sinks;
+		this.executor = executor;
+		failures = new IOException[sinks.size()];
+		buffers = new byte[2][chunkSize];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		buffers[current][count++] = (byte) b;
+		if (count == buffers[current].length) {
+			dispatch();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int n = Math.min(len, buffers[current].length - count);
+			System.arraycopy(b, off, buffers[current], count, n);
+			count += n;
+			off += n;
+			len -= n;
+			if (count == buffers[current].length) {
+				dispatch();
+			}
+		}
+	}
+
+	/**
+	 * Writes collected data and closes sinks, failures of sinks are not thrown but kept
+	 * @throws IOException if waiting is interrupted
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (count > 0) {
+			dispatch();
+		}
+		await();
+		for (int i = 0; i < sinks.size(); i++) {
+			if (failures[i] == null) {
+				final int index = i;
+				pending.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							sinks.get(index).close();
+						} catch (Exception e) {
+							fail(index, e);
+						}
+					}
+				}));
+			}
+		}
+		await();
+	}
+
+	/**
+	 * Waits for written chunks and closes sinks without writing collected data
+	 */
+	void abort() {
+		closed = true;
+		try {
+			await();
+		} catch (InterruptedIOException e) {
+			// sinks are closed anyway
+		}
+		for (OutputStream sink : sinks) {
+			try {
+				sink.close();
+			} catch (Exception e) {
+				//ignore
+			}
+		}
+	}
+
+	/**
+	 * @param index - index of sink
+	 * @return failure of sink or null if data was written successfully
+	 */
+	IOException getFailure(int index) {
+		return failures[index];
+	}
+
+	private void dispatch() throws IOException {
+		// tasks of previous chunk use other buffer, they must complete before it is reused
+		await();
+		final byte[] chunk = buffers[current];
+		final int len = count;
+		for (int i = 0; i < sinks.size(); i++) {
+			if (failures[i] == null) {
+				final int index = i;
+				pending.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							sinks.get(index).write(chunk, 0, len);
+						} catch (Exception e) {
+							fail(index, e);
+						}
+					}
+				}));
+			}
+		}
+		current ^= 1;
+		count = 0;
+	}
+
+	private void fail(int index, Exception e) {
+		failures[index] = e instanceof IOException ? (IOException) e : new IOException(e);
+	}
+
+	private void await() throws InterruptedIOException {
+		try {
+			for (Future<?> future : pending) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Writing to sinks interrupted");
+		} catch (ExecutionException e) {
+			// unreachable, tasks catch failures of sinks
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pending.clear();
+		}
+	}
+}
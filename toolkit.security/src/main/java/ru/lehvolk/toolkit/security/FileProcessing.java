@@ -0,0 +1,12 @@
+package ru.lehvolk.toolkit.security;
+
+/**
+ * Represents the way files are read and written while encryption/decryption
+ */
+public enum FileProcessing {
+
+	/** file channels with direct buffers */
+	CHANNEL,
+	/** memory mapped windows of source written to destination channel, small files are processed as {@link #CHANNEL} */
+	MAPPED
+}
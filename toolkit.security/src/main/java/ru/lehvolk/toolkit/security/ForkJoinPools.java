@@ -0,0 +1,93 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Holder of shared {@link ForkJoinPool} used by parallel operations if no pool is specified and runner of their tasks
+ */
+final class ForkJoinPools {
+
+	private static ForkJoinPool defaultPool;
+
+	private ForkJoinPools() {
+	}
+
+	/**
+	 * @return shared pool with parallelism of available processors
+	 */
+	static synchronized ForkJoinPool getDefault() {
+		if (defaultPool == null) {
+			defaultPool = new ForkJoinPool();
+		}
+		return defaultPool;
+	}
+
+	/**
+	 * Runs tasks by given executor, by own pool of given parallelism if executor is null or by shared pool if both are
+	 * not specified. Own pool is shut down after completion, all tasks are cancelled if waiting is interrupted.
+	 * @param executor - executor of tasks, may be null
+	 * @param parallelism - parallelism of own pool, 0 or less for shared pool
+	 * @param tasks - tasks by their keys
+	 * @param results - receives results of completed tasks in order of tasks
+	 * @param failures - receives failures of tasks in order of tasks
+	 * @param failureMessage - message of failure wrapping exception, key of task is appended
+	 * @param interruptMessage - message of exception thrown on interruption
+	 * @throws CryptoException if waiting is interrupted
+	 */
+	static <K, V> void invokeAll(ExecutorService executor, int parallelism, Map<K, ? extends Callable<V>> tasks,
+			Map<K, V> results, Map<K, CryptoException> failures, String failureMessage, String interruptMessage)
+			throws CryptoException {
+		ExecutorService workers = executor;
+		boolean ownPool = false;
+		if (workers == null) {
+			ownPool = parallelism > 0;
+			workers = ownPool ? new ForkJoinPool(parallelism) : getDefault();
+		}
+
+		Map<K, Future<V>> futures = new LinkedHashMap<K, Future<V>>();
+		try {
+			for (Map.Entry<K, ? extends Callable<V>> task : tasks.entrySet()) {
+				futures.put(task.getKey(), workers.submit(task.getValue()));
+			}
+			for (Map.Entry<K, Future<V>> entry : futures.entrySet()) {
+				try {
+					results.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException e) {
+					failures.put(entry.getKey(), failure(e.getCause(), failureMessage + entry.getKey()));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					for (Future<V> future : futures.values()) {
+						future.cancel(true);
+					}
+					throw new CryptoException(interruptMessage, e);
+				}
+			}
+		} finally {
+			if (ownPool) {
+				workers.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Finds failure of task, checked exceptions of {@link java.util.concurrent.Callable} tasks are wrapped by pool into
+	 * {@link RuntimeException}
+	 * @param cause - cause of {@link java.util.concurrent.ExecutionException}
+	 * @param message - message of exception created if task didn't throw {@link CryptoException}
+	 * @return {@link CryptoException} thrown by task or wrapping its failure
+	 */
+	static CryptoException failure(Throwable cause, String message) {
+		for (Throwable t = cause; t != null; t = t.getCause()) {
+			if (t instanceof CryptoException) {
+				return (CryptoException) t;
+			}
+		}
+		return new CryptoException(message, cause);
+	}
+}
@@ -0,0 +1,63 @@
+package ru.lehvolk.toolkit.security;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+/**
+ * Per-thread cache of initialized {@link KeyGenerator}s, generators of the thread share one {@link SecureRandom}
+ */
+final class KeyGenerators {
+
+	private static final ThreadLocal<Map<KeyType, KeyGenerator>> GENERATORS =
+			new ThreadLocal<Map<KeyType, KeyGenerator>>() {
+
+				@Override
+				protected Map<KeyType, KeyGenerator> initialValue() {
+					return new EnumMap<KeyType, KeyGenerator>(KeyType.class);
+				}
+			};
+
+	private static final ThreadLocal<SecureRandom> RANDOM = new ThreadLocal<SecureRandom>();
+
+	private KeyGenerators() {
+	}
+
+	/**
+	 * @param type - type of key, {@link KeyType}
+	 * @return new secret key
+	 * @throws GeneralSecurityException if generator can't be created
+	 */
+	static SecretKey generate(KeyType type) throws GeneralSecurityException {
+		Map<KeyType, KeyGenerator> generators = GENERATORS.get();
+		KeyGenerator keygen = generators.get(type);
+		if (keygen == null) {
+			keygen = KeyGenerator.getInstance(type.getAlias());
+			keygen.init(type.getKeySize(), random());
+			generators.put(type, keygen);
+		}
+		return keygen.generateKey();
+	}
+
+	/**
+	 * Fills given array with random bytes of current thread's {@link SecureRandom}
+	 * @param bytes - array to fill
+	 * @throws GeneralSecurityException if random can't be created
+	 */
+	static void nextBytes(byte[] bytes) throws GeneralSecurityException {
+		random().nextBytes(bytes);
+	}
+
+	private static SecureRandom random() throws GeneralSecurityException {
+		SecureRandom random = RANDOM.get();
+		if (random == null) {
+			random = SecureRandom.getInstance("SHA1PRNG", "SUN");
+			RANDOM.set(random);
+		}
+		return random;
+	}
+}
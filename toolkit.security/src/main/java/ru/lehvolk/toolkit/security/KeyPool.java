@@ -0,0 +1,134 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of pre-generated keys of one {@link KeyType}.<br>
+ * Pool is filled by background daemon thread, keys are taken in constant time. If pool is exhausted key is generated
+ * in caller thread. Every key is handed out only once.
+ */
+public class KeyPool {
+
+	private final KeyType type;
+	private final BlockingQueue<SecretKeyPackage> keys;
+	private final BlockingQueue<RawKeyPackage> rawKeys;
+	private final Object monitor = new Object();
+	private volatile Thread filler;
+
+	/**
+	 * Creates pool, call {@link #start()} to begin background generation
+	 * @param type - type of keys, {@link KeyType}
+	 * @param capacity - maximal count of ready keys of each kind
+	 */
+	public KeyPool(KeyType type, int capacity) {
+		if (type == null || capacity <= 0) {
+			throw new IllegalArgumentException("Key type and positive capacity are mandatory");
+		}
+		this.type = type;
+		this.keys = new ArrayBlockingQueue<SecretKeyPackage>(capacity);
+		this.rawKeys = new ArrayBlockingQueue<RawKeyPackage>(capacity);
+	}
+
+	/**
+	 * Starts background generation of keys
+	 */
+	public synchronized void start() {
+		if (filler != null) {
+			return;
+		}
+		filler = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				fill();
+			}
+		}, "key-pool-" + type);
+		filler.setDaemon(true);
+		filler.start();
+	}
+
+	/**
+	 * Stops background generation, ready keys remain available
+	 */
+	public synchronized void shutdown() {
+		if (filler != null) {
+			filler.interrupt();
+			filler = null;
+		}
+	}
+
+	/**
+	 * @see Crypto#generateKey(KeyType)
+	 * @return {@link SecretKeyPackage} of secret key and key represents IV
+	 * @throws CryptoException if pool is exhausted and key generation failed
+	 */
+	public SecretKeyPackage takeKey() throws CryptoException {
+		SecretKeyPackage key = keys.poll();
+		if (key == null) {
+			return Crypto.generateKey(type);
+		}
+		wakeUp();
+		return key;
+	}
+
+	/**
+	 * @see Crypto#generateRawKey(KeyType)
+	 * @return {@link RawKeyPackage} of secret key
+	 * @throws CryptoException if pool is exhausted and key generation failed
+	 */
+	public RawKeyPackage takeRawKey() throws CryptoException {
+		RawKeyPackage key = rawKeys.poll();
+		if (key == null) {
+			return Crypto.generateRawKey(type);
+		}
+		wakeUp();
+		return key;
+	}
+
+	/**
+	 * @return the type
+	 */
+	public KeyType getType() {
+		return type;
+	}
+
+	private void wakeUp() {
+		synchronized (monitor) {
+			monitor.notify();
+		}
+	}
+
+	private void fill() {
+		Thread current = Thread.currentThread();
+		try {
+			while (filler == current) {
+				boolean generated = false;
+				if (keys.remainingCapacity() > 0) {
+					keys.offer(Crypto.generateKey(type));
+					generated = true;
+				}
+				if (rawKeys.remainingCapacity() > 0) {
+					rawKeys.offer(Crypto.generateRawKey(type));
+					generated = true;
+				}
+				if (!generated) {
+					synchronized (monitor) {
+						if (keys.remainingCapacity() == 0 && rawKeys.remainingCapacity() == 0) {
+							monitor.wait();
+						}
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// pool is shut down
+		} catch (CryptoException e) {
+			// keys will be generated in caller threads
+			synchronized (this) {
+				if (filler == current) {
+					filler = null;
+				}
+			}
+		}
+	}
+}
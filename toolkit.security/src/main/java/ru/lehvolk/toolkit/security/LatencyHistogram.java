@@ -0,0 +1,40 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with power of two buckets: bucket <code>i</code> counts durations from
+ * <code>2^(i-1)</code> to <code>2^i - 1</code> nanoseconds, bucket 0 counts zero durations
+ */
+final class LatencyHistogram {
+
+	static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * @param nanos - duration in nanoseconds
+	 */
+	void record(long nanos) {
+		buckets.incrementAndGet(nanos <= 0 ? 0 : BUCKETS - Long.numberOfLeadingZeros(nanos));
+	}
+
+	/**
+	 * @return counts of buckets
+	 */
+	long[] snapshot() {
+		long[] result = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			result[i] = buckets.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @param bucket - index of bucket
+	 * @return maximal duration counted by bucket in nanoseconds
+	 */
+	static long upperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+}
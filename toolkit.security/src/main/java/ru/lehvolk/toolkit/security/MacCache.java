@@ -0,0 +1,190 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per-thread bounded cache of initialized {@link Mac} instances keyed by algorithm and key content.<br>
+ * Least recently used instances are evicted when cache exceeds its size. Acquired instance is removed from the cache
+ * until released, so nested usage in the same thread gets its own instance.
+ */
+final class MacCache {
+
+	private static final int MAX_ENTRIES_PER_THREAD = 32;
+
+	/**
+	 * Key of cached {@link Mac}: algorithms and key as {@link String}, byte array or {@link DirectKeyPackage}
+	 */
+	private static final class MacKey {
+
+		private final String algorithm;
+		private final String keyAlgorithm;
+		private final Object key;
+		private final int hash;
+
+		MacKey(String algorithm, String keyAlgorithm, Object key) {
+			this.algorithm = algorithm;
+			this.keyAlgorithm = keyAlgorithm;
+			this.key = key;
+			int keyHash = key instanceof byte[] ? Arrays.hashCode((byte[]) key) : key.hashCode();
+			hash = (algorithm.hashCode() * 31 + keyAlgorithm.hashCode()) * 31 + keyHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof MacKey)) {
+				return false;
+			}
+			MacKey other = (MacKey) obj;
+			if (hash != other.hash || !algorithm.equals(other.algorithm) || !keyAlgorithm.equals(other.keyAlgorithm)) {
+				return false;
+			}
+			if (key instanceof byte[] && other.key instanceof byte[]) {
+				return Arrays.equals((byte[]) key, (byte[]) other.key);
+			}
+			return key.equals(other.key);
+		}
+	}
+
+	/**
+	 * Acquired {@link Mac} with its cache key
+	 */
+	static final class Entry {
+
+		private final MacKey key;
+		private final Mac mac;
+
+		Entry(MacKey key, Mac mac) {
+			this.key = key;
+			this.mac = mac;
+		}
+
+		/**
+		 * @return the mac
+		 */
+		Mac getMac() {
+			return mac;
+		}
+	}
+
+	private static final ThreadLocal<Map<MacKey, Mac>> CACHE = new ThreadLocal<Map<MacKey, Mac>>() {
+
+		@Override
+		protected Map<MacKey, Mac> initialValue() {
+			return new LinkedHashMap<MacKey, Mac>(16, 0.75f, true) {
+
+				private static final long serialVersionUID = 2863390128870434735L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<MacKey, Mac> eldest) {
+					return size() > MAX_ENTRIES_PER_THREAD;
+				}
+			};
+		}
+	};
+
+	private MacCache() {
+	}
+
+	/**
+	 * Takes {@link Mac} initialized with given key bytes
+	 * @param algorithm - MAC algorithm
+	 * @param keyAlgorithm - algorithm of secret key
+	 * @param key - key bytes, must not be modified while in use
+	 * @return acquired entry
+	 * @throws Exception if MAC can't be created or initialized
+	 */
+	static Entry acquire(String algorithm, String keyAlgorithm, byte[] key) throws Exception {
+		MacKey macKey = new MacKey(algorithm, keyAlgorithm, key);
+		Mac mac = CACHE.get().remove(macKey);
+		if (mac != null) {
+			return new Entry(macKey, mac);
+		}
+		return new Entry(new MacKey(algorithm, keyAlgorithm, key.clone()), create(algorithm, keyAlgorithm, key));
+	}
+
+	/**
+	 * Takes {@link Mac} initialized with key of given package, cached by identity of package, so no copy of key is
+	 * kept by the cache
+	 * @param algorithm - MAC algorithm
+	 * @param key - {@link DirectKeyPackage}
+	 * @return acquired entry
+	 * @throws Exception if MAC can't be created or initialized
+	 */
+	static Entry acquire(String algorithm, DirectKeyPackage key) throws Exception {
+		MacKey macKey = new MacKey(algorithm, key.getType().getAlias(), key);
+		Mac mac = CACHE.get().remove(macKey);
+		if (mac == null) {
+			byte[] raw = key.getKey();
+			try {
+				mac = create(algorithm, key.getType().getAlias(), raw);
+			} finally {
+				Arrays.fill(raw, (byte) 0);
+			}
+		}
+		return new Entry(macKey, mac);
+	}
+
+	/**
+	 * Takes {@link Mac} initialized with bytes of given key string in platform charset
+	 * @param algorithm - MAC algorithm, also used as algorithm of secret key
+	 * @param key - key characters
+	 * @return acquired entry
+	 * @throws Exception if MAC can't be created or initialized
+	 */
+	static Entry acquire(String algorithm, String key) throws Exception {
+		MacKey macKey = new MacKey(algorithm, algorithm, key);
+		Mac mac = CACHE.get().remove(macKey);
+		if (mac == null) {
+			mac = create(algorithm, algorithm, key.getBytes());
+		}
+		return new Entry(macKey, mac);
+	}
+
+	/**
+	 * Returns {@link Mac} to the cache after successful operation
+	 * @param entry - acquired entry
+	 */
+	static void release(Entry entry) {
+		CACHE.get().put(entry.key, entry.mac);
+	}
+
+	/**
+	 * Drops MACs of current thread initialized with given key package
+	 * @param key - {@link DirectKeyPackage}
+	 */
+	static void forget(DirectKeyPackage key) {
+		Iterator<MacKey> it = CACHE.get().keySet().iterator();
+		while (it.hasNext()) {
+			if (it.next().key == key) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drops all MACs cached by current thread
+	 */
+	static void clear() {
+		CACHE.remove();
+	}
+
+	private static Mac create(String algorithm, String keyAlgorithm, byte[] key) throws Exception {
+		Mac mac = Mac.getInstance(algorithm);
+		mac.init(new SecretKeySpec(key, keyAlgorithm));
+		return mac;
+	}
+}
@@ -0,0 +1,310 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Security;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPEncryptedDataList;
+import org.bouncycastle.openpgp.PGPLiteralData;
+import org.bouncycastle.openpgp.PGPObjectFactory;
+import org.bouncycastle.openpgp.PGPOnePassSignature;
+import org.bouncycastle.openpgp.PGPOnePassSignatureList;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyEncryptedData;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureList;
+import org.bouncycastle.openpgp.PGPUtil;
+
+/**
+ * Class contains methods for decrypting data encrypted with PGP technology and verifying its signature.<br>
+ * Data is processed as stream: signature is verified while plain data is written to output, so memory used doesn't
+ * depend on size of data. Plain data is written before signature is checked, output must be discarded if decryption
+ * fails.
+ */
+public class PGPDecoder {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Result of decryption
+	 */
+	public static class Result {
+
+		private final String fileName;
+		private final Date modificationTime;
+		private final long bytes;
+		private final boolean verified;
+		private final boolean integrityChecked;
+
+		Result(String fileName, Date modificationTime, long bytes, boolean verified, boolean integrityChecked) {
+			this.fileName = fileName;
+			this.modificationTime = modificationTime;
+			this.bytes = bytes;
+			this.verified = verified;
+			this.integrityChecked = integrityChecked;
+		}
+
+		/**
+		 * @return the name under which data was encrypted
+		 */
+		public String getFileName() {
+			return fileName;
+		}
+
+		/**
+		 * @return the modification time stored in message
+		 */
+		public Date getModificationTime() {
+			return modificationTime;
+		}
+
+		/**
+		 * @return the count of plain bytes written
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return true if signature of data was verified
+		 */
+		public boolean isVerified() {
+			return verified;
+		}
+
+		/**
+		 * @return true if message had integrity packet and it was checked
+		 */
+		public boolean isIntegrityChecked() {
+			return integrityChecked;
+		}
+	}
+
+	/**
+	 * Keys of decryption: prepared private key or secret key rings with password, and keys of signer
+	 */
+	private static final class Keys {
+
+		private final PGPPrivateKey privateKey;
+		private final PGPSecretKeyRingCollection secretKeys;
+		private final String pass;
+		private final List<PGPPublicKey> verificationKeys;
+
+		Keys(PGPPrivateKey privateKey, PGPSecretKeyRingCollection secretKeys, String pass,
+				List<PGPPublicKey> verificationKeys) {
+			this.privateKey = privateKey;
+			this.secretKeys = secretKeys;
+			this.pass = pass;
+			this.verificationKeys = verificationKeys;
+		}
+
+		/**
+		 * @param keyID - id of key data is encrypted for
+		 * @return private key of given id or null if there is no such key
+		 */
+		PGPPrivateKey getPrivateKey(long keyID) throws Exception {
+			if (privateKey != null) {
+				return privateKey.getKeyID() == keyID ? privateKey : null;
+			}
+			PGPSecretKey secretKey = secretKeys.getSecretKey(keyID);
+			return secretKey != null ? PGPKeyPackage.extractPrivateKey(secretKey, pass) : null;
+		}
+
+		/**
+		 * @param keyID - id of key data is signed with
+		 * @return public key of given id or null if there is no such key
+		 */
+		PGPPublicKey getVerificationKey(long keyID) {
+			for (PGPPublicKey key : verificationKeys) {
+				if (key.getKeyID() == keyID) {
+					return key;
+				}
+			}
+			return null;
+		}
+	}
+
+	private int bufferSize = BUFFER_SIZE;
+
+	/**
+	 * Decrypts data with private key read from secret key rings and verifies signature with public key.<br>
+	 * Decryption key is looked up by id of key data is encrypted for, so data encrypted for subkey is decrypted. Data
+	 * may be signed with master key or any subkey of signer ring.
+	 * @param out - {@link OutputStream} where plain data will be passed, stream is not closed
+	 * @param data - encrypted data {@link InputStream}, binary or armored
+	 * @param privKeyStream - secret key rings with decryption key {@link InputStream}
+	 * @param pass - password for private key
+	 * @param pubKeyStream - public key ring of signer {@link InputStream}, null if signature needn't be verified
+	 * @return {@link Result}
+	 * @throws CryptoException if any error occurred or signature is wrong
+	 */
+	public Result decrypt(OutputStream out, InputStream data, InputStream privKeyStream, String pass,
+			InputStream pubKeyStream) throws CryptoException {
+
+		PGPSecretKeyRingCollection secretKeys = PGPKeyPackage.readSecretKeys(privKeyStream);
+		List<PGPPublicKey> verificationKeys = null;
+		if (pubKeyStream != null) {
+			verificationKeys = PGPKeyPackage.readPublicKeys(pubKeyStream);
+		}
+		return decrypt(out, data, new Keys(null, secretKeys, pass, verificationKeys));
+	}
+
+	/**
+	 * Decrypts data with prepared private key and verifies signature with public key.<br>
+	 * If verification key is specified, data must be signed with it.
+	 * @param out - {@link OutputStream} where plain data will be passed, stream is not closed
+	 * @param data - encrypted data {@link InputStream}, binary or armored
+	 * @param decryptionKey - private key of recipient
+	 * @param verificationKey - public key of signer, null if signature needn't be verified
+	 * @return {@link Result}
+	 * @throws CryptoException if any error occurred or signature is wrong
+	 */
+	public Result decrypt(OutputStream out, InputStream data, PGPPrivateKey decryptionKey,
+			PGPPublicKey verificationKey) throws CryptoException {
+
+		return decrypt(out, data, new Keys(decryptionKey, null, null,
+				verificationKey != null ? Collections.singletonList(verificationKey) : null));
+	}
+
+	private Result decrypt(OutputStream out, InputStream data, Keys keys) throws CryptoException {
+		long start = CryptoMetrics.start();
+		try {
+			Result result = process(out, data, keys);
+			CryptoMetrics.success(CryptoOperation.PGP_DECRYPT, null, result.getBytes(), start);
+			return result;
+		} catch (CryptoException e) {
+			CryptoMetrics.failure(CryptoOperation.PGP_DECRYPT, null, start);
+			throw e;
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.PGP_DECRYPT, null, start);
+			throw new CryptoException("Error while data decryption", e);
+		}
+	}
+
+	private Result process(OutputStream out, InputStream data, Keys keys) throws Exception {
+
+		InputStream input = PGPUtil.getDecoderStream(new BufferedInputStream(data, bufferSize));
+		PGPPublicKeyEncryptedData encrypted = null;
+		PGPPrivateKey decryptionKey = null;
+		Iterator<?> it = findEncryptedData(new PGPObjectFactory(input)).getEncryptedDataObjects();
+		while (decryptionKey == null && it.hasNext()) {
+			Object candidate = it.next();
+			if (candidate instanceof PGPPublicKeyEncryptedData) {
+				encrypted = (PGPPublicKeyEncryptedData) candidate;
+				decryptionKey = keys.getPrivateKey(encrypted.getKeyID());
+			}
+		}
+		if (decryptionKey == null) {
+			throw new CryptoException("Data is not encrypted for decryption key");
+		}
+
+		PGPObjectFactory factory = new PGPObjectFactory(encrypted.getDataStream(decryptionKey, "BC"));
+		Object message = factory.nextObject();
+		if (message instanceof PGPCompressedData) {
+			factory = new PGPObjectFactory(((PGPCompressedData) message).getDataStream());
+			message = factory.nextObject();
+		}
+
+		PGPOnePassSignature signature = null;
+		if (message instanceof PGPOnePassSignatureList) {
+			if (keys.verificationKeys != null) {
+				signature = findSignature((PGPOnePassSignatureList) message, keys);
+			}
+			message = factory.nextObject();
+		}
+		if (keys.verificationKeys != null && signature == null) {
+			throw new CryptoException("Data is not signed by verification key");
+		}
+		if (!(message instanceof PGPLiteralData)) {
+			throw new CryptoException("Unexpected PGP message content");
+		}
+
+		PGPLiteralData literal = (PGPLiteralData) message;
+		InputStream literalStream = literal.getInputStream();
+		byte[] buf = new byte[bufferSize];
+		long bytes = 0;
+		int len;
+		while ((len = literalStream.read(buf)) > -1) {
+			bytes += len;
+			out.write(buf, 0, len);
+			if (signature != null) {
+				signature.update(buf, 0, len);
+			}
+		}
+
+		if (signature != null && !verify(signature, factory.nextObject())) {
+			throw new CryptoException("Signature verification failed");
+		}
+		// integrity packet follows whole content, so it is available only after data is read
+		boolean integrityChecked = encrypted.isIntegrityProtected();
+		if (integrityChecked && !encrypted.verify()) {
+			throw new CryptoException("Message integrity check failed");
+		}
+		return new Result(literal.getFileName(), literal.getModificationTime(), bytes, signature != null,
+				integrityChecked);
+	}
+
+	private static PGPEncryptedDataList findEncryptedData(PGPObjectFactory factory) throws IOException,
+			CryptoException {
+		Object object = factory.nextObject();
+		// marker packet may precede encrypted data
+		if (!(object instanceof PGPEncryptedDataList)) {
+			object = factory.nextObject();
+		}
+		if (!(object instanceof PGPEncryptedDataList)) {
+			throw new CryptoException("Encrypted data not found");
+		}
+		return (PGPEncryptedDataList) object;
+	}
+
+	private static PGPOnePassSignature findSignature(PGPOnePassSignatureList list, Keys keys) throws Exception {
+		for (int i = 0; i < list.size(); i++) {
+			PGPOnePassSignature signature = list.get(i);
+			PGPPublicKey key = keys.getVerificationKey(signature.getKeyID());
+			if (key != null) {
+				signature.initVerify(key, "BC");
+				return signature;
+			}
+		}
+		return null;
+	}
+
+	private static boolean verify(PGPOnePassSignature signature, Object signatures) throws Exception {
+		if (!(signatures instanceof PGPSignatureList)) {
+			throw new CryptoException("Signature not found");
+		}
+		PGPSignatureList list = (PGPSignatureList) signatures;
+		for (int i = 0; i < list.size(); i++) {
+			PGPSignature candidate = list.get(i);
+			if (candidate.getKeyID() == signature.getKeyID()) {
+				return signature.verify(candidate);
+			}
+		}
+		throw new CryptoException("Signature not found");
+	}
+
+	/**
+	 * @param bufferSize the size of I/O buffers, 64K by default
+	 */
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		this.bufferSize = bufferSize;
+	}
+}
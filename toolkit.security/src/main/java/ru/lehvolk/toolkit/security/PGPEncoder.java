@@ -1,12 +1,28 @@
 package ru.lehvolk.toolkit.security;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchProviderException;
 import java.security.SecureRandom;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.Deflater;
 
 import org.bouncycastle.bcpg.ArmoredOutputStream;
 import org.bouncycastle.bcpg.CompressionAlgorithmTags;
@@ -18,15 +34,11 @@ import org.bouncycastle.openpgp.PGPEncryptedDataGenerator;
 import org.bouncycastle.openpgp.PGPException;
 import org.bouncycastle.openpgp.PGPLiteralData;
 import org.bouncycastle.openpgp.PGPLiteralDataGenerator;
-import org.bouncycastle.openpgp.PGPPrivateKey;
 import org.bouncycastle.openpgp.PGPPublicKey;
-import org.bouncycastle.openpgp.PGPPublicKeyRing;
 import org.bouncycastle.openpgp.PGPSecretKey;
-import org.bouncycastle.openpgp.PGPSecretKeyRing;
 import org.bouncycastle.openpgp.PGPSignature;
 import org.bouncycastle.openpgp.PGPSignatureGenerator;
 import org.bouncycastle.openpgp.PGPSignatureSubpacketGenerator;
-import org.bouncycastle.openpgp.PGPUtil;
 
 /**
  * Class contains methods for encrypting and signing data with PGP technology
@@ -37,11 +49,182 @@ public class PGPEncoder {
 		Security.addProvider(new BouncyCastleProvider());
 	}
 
+	/**
+	 * Result of encryption
+	 */
+	public static class Result {
+
+		private final long bytes;
+		private final int compression;
+		private final int compressionLevel;
+		private final double sampleRatio;
+
+		Result(long bytes, int compression, int compressionLevel, double sampleRatio) {
+			this.bytes = bytes;
+			this.compression = compression;
+			this.compressionLevel = compressionLevel;
+			this.sampleRatio = sampleRatio;
+		}
+
+		/**
+		 * @return the count of plain bytes encrypted
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return the compression algorithm used, {@link CompressionAlgorithmTags#UNCOMPRESSED} if data was not
+		 *         compressed
+		 */
+		public int getCompression() {
+			return compression;
+		}
+
+		/**
+		 * @return the compression level used, {@link Deflater#DEFAULT_COMPRESSION} for default one and for
+		 *         {@link CompressionAlgorithmTags#BZIP2}
+		 */
+		public int getCompressionLevel() {
+			return compressionLevel;
+		}
+
+		/**
+		 * @return the ratio of compressed size to original size of first data block, -1 if data was not sampled
+		 */
+		public double getSampleRatio() {
+			return sampleRatio;
+		}
+	}
+
+	/**
+	 * Result of encryption for several recipients separately
+	 */
+	public static class BatchResult extends Result {
+
+		private final Map<PGPPublicKey, CryptoException> failures;
+
+		BatchResult(Result result, Map<PGPPublicKey, CryptoException> failures) {
+			super(result.bytes, result.compression, result.compressionLevel, result.sampleRatio);
+			this.failures = failures;
+		}
+
+		/**
+		 * @return the failures of outputs by public key of recipient
+		 */
+		public Map<PGPPublicKey, CryptoException> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return true if data was written to all outputs
+		 */
+		public boolean isSuccessful() {
+			return failures.isEmpty();
+		}
+	}
+
+	/**
+	 * Result of encryption of file set
+	 */
+	public static class FilesResult {
+
+		private final Map<File, Result> results;
+		private final Map<File, CryptoException> failures;
+
+		FilesResult(Map<File, Result> results, Map<File, CryptoException> failures) {
+			this.results = results;
+			this.failures = failures;
+		}
+
+		/**
+		 * @return the results of encrypted files by source file
+		 */
+		public Map<File, Result> getResults() {
+			return results;
+		}
+
+		/**
+		 * @return the failures by source file
+		 */
+		public Map<File, CryptoException> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return the count of plain bytes encrypted
+		 */
+		public long getBytes() {
+			long bytes = 0;
+			for (Result result : results.values()) {
+				bytes += result.getBytes();
+			}
+			return bytes;
+		}
+
+		/**
+		 * @return true if all files were encrypted
+		 */
+		public boolean isSuccessful() {
+			return failures.isEmpty();
+		}
+	}
+
+	/**
+	 * Encrypted output of one recipient, closing it completes encrypted data
+	 */
+	private final class RecipientOutputStream extends OutputStream {
+
+		private final OutputStream out;
+		private final OutputStream output;
+		private final PGPEncryptedDataGenerator encryptedDataGenerator;
+		private final OutputStream encryptedOutputStream;
+
+		RecipientOutputStream(OutputStream out, PGPPublicKey recipient) throws Exception {
+			this.out = out;
+			output = armor ? new ArmoredOutputStream(out) : out;
+			encryptedDataGenerator = createEncryptedDataGenerator(Collections.singletonList(recipient));
+			encryptedOutputStream = encryptedDataGenerator.open(output, new byte[BUFFER_SIZE]);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			encryptedOutputStream.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			encryptedOutputStream.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				encryptedOutputStream.close();
+				encryptedDataGenerator.close();
+			} finally {
+				output.close();
+				// armored stream doesn't close underlying one
+				if (output != out) {
+					out.close();
+				}
+			}
+		}
+	}
+
+	private static final PGPKeyPackage NO_SIGNER =
+			new PGPKeyPackage(Collections.<PGPPublicKey> emptyList(), null, null);
+
 	private int compression = CompressionAlgorithmTags.ZIP;
 	private int symmetricAlgorithm = SymmetricKeyAlgorithmTags.AES_128;
 	private int hashAlgorithm = HashAlgorithmTags.SHA256;
 	private static final int BUFFER_SIZE = 1 << 16;
 	private boolean armor = false;
+	private boolean adaptiveCompression = false;
+	private double minCompressionGain = 0.05;
+	private double fastCompressionGain = 0.25;
+	private ExecutorService executor;
+	private int parallelism;
 
 	private void closeStream(OutputStream stream) {
 		if (stream != null) {
@@ -61,12 +244,41 @@ public class PGPEncoder {
 	 * @param pubKeyStream - public key to encrypt {@link InputStream}
 	 * @param privKeyStream - private key for signing
 	 * @param pass - password for private key
+	 * @return {@link Result}
 	 * @throws CryptoException if any error occurred
 	 */
-	@SuppressWarnings("unchecked")
-	public void encrypt(OutputStream out, InputStream data, String fileName, InputStream pubKeyStream,
+	public Result encrypt(OutputStream out, InputStream data, String fileName, InputStream pubKeyStream,
 			InputStream privKeyStream, String pass) throws CryptoException {
 
+		PGPKeyPackage keys;
+		long start = CryptoMetrics.start();
+		try {
+			keys = PGPKeyPackage.read(pubKeyStream, privKeyStream, pass);
+		} catch (CryptoException e) {
+			CryptoMetrics.failure(CryptoOperation.PGP_ENCRYPT, null, start);
+			closeStream(out);
+			throw e;
+		}
+		return encrypt(out, data, fileName, keys);
+	}
+
+	/**
+	 * Encrypts data input stream with prepared keys and sign it if keys contain signing key.<br>
+	 * Keys are not parsed again, so repeated encryptions with the same {@link PGPKeyPackage} pay only for data
+	 * processing. Data is encrypted for all recipients of the package, any of them can decrypt it. Configured encoder
+	 * may be used by several threads concurrently.
+	 * @see PGPKeyCache
+	 * @param out - {@link OutputStream} where encrypted data will be passed
+	 * @param data - data to be encrypted {@link InputStream}
+	 * @param fileName - name under witch data will be encrypted
+	 * @param keys - {@link PGPKeyPackage} of recipients and signer
+	 * @return {@link Result}
+	 * @throws CryptoException if any error occurred
+	 */
+	public Result encrypt(OutputStream out, InputStream data, String fileName, PGPKeyPackage keys)
+			throws CryptoException {
+
+		long start = CryptoMetrics.start();
 		OutputStream output = out;
 		if (armor) {
 			output = new ArmoredOutputStream(out);
@@ -74,52 +286,241 @@ public class PGPEncoder {
 
 		PGPEncryptedDataGenerator encryptedDataGenerator = null;
 		OutputStream encryptedOutputStream = null;
+		Result result;
+
+		try {
+			encryptedDataGenerator = createEncryptedDataGenerator(keys.getEncryptionKeys());
+			encryptedOutputStream = encryptedDataGenerator.open(output, new byte[BUFFER_SIZE]);
+			result = writePayload(encryptedOutputStream, data, fileName, keys);
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.PGP_ENCRYPT, null, start);
+			if (e instanceof CryptoException) {
+				throw (CryptoException) e;
+			}
+			throw new CryptoException("Error while data encryption", e);
+		} finally {
+			closeStream(encryptedOutputStream);
+			try {
+				if (encryptedDataGenerator != null) {
+					encryptedDataGenerator.close();
+				}
+			} catch (IOException e) {
+			}
+			closeStream(output);
+		}
+		CryptoMetrics.success(CryptoOperation.PGP_ENCRYPT, null, result.getBytes(), start);
+		return result;
+	}
+
+	/**
+	 * Encrypts data input stream for several recipients separately: data is compressed and signed once, then encrypted
+	 * for every recipient concurrently and written to its own output.<br>
+	 * Failure of one output doesn't affect others, it is reported by {@link BatchResult#getFailures()}. Outputs are
+	 * closed.
+	 * @param data - data to be encrypted {@link InputStream}
+	 * @param fileName - name under witch data will be encrypted
+	 * @param signer - {@link PGPKeyPackage} with signing key, null if no signing required; its recipients are not used
+	 * @param outputs - {@link OutputStream} where encrypted data will be passed by public key of its recipient
+	 * @return {@link BatchResult}
+	 * @throws CryptoException if data can't be read, compressed or signed
+	 */
+	public BatchResult encrypt(InputStream data, String fileName, PGPKeyPackage signer,
+			Map<PGPPublicKey, OutputStream> outputs) throws CryptoException {
+
+		long start = CryptoMetrics.start();
+		List<PGPPublicKey> recipients = new ArrayList<PGPPublicKey>(outputs.keySet());
+		List<OutputStream> sinks = new ArrayList<OutputStream>(recipients.size());
+		Map<PGPPublicKey, CryptoException> failures = new LinkedHashMap<PGPPublicKey, CryptoException>();
+		for (PGPPublicKey recipient : recipients) {
+			OutputStream out = outputs.get(recipient);
+			try {
+				sinks.add(new RecipientOutputStream(out, recipient));
+			} catch (Exception e) {
+				closeStream(out);
+				failures.put(recipient, new CryptoException("Error while data encryption", e));
+			}
+		}
+		recipients.removeAll(failures.keySet());
+
+		ExecutorService workers = executor != null ? executor : ForkJoinPools.getDefault();
+		FanOutOutputStream fanOut = new FanOutOutputStream(sinks, workers, BUFFER_SIZE);
+		Result result;
+		try {
+			result = writePayload(fanOut, data, fileName, signer != null ? signer : NO_SIGNER);
+			fanOut.close();
+		} catch (Exception e) {
+			fanOut.abort();
+			CryptoMetrics.failure(CryptoOperation.PGP_ENCRYPT, null, start);
+			if (e instanceof CryptoException) {
+				throw (CryptoException) e;
+			}
+			throw new CryptoException("Error while data encryption", e);
+		}
+		for (int i = 0; i < recipients.size(); i++) {
+			IOException failure = fanOut.getFailure(i);
+			if (failure != null) {
+				failures.put(recipients.get(i), new CryptoException("Error while data encryption", failure));
+			}
+		}
+		CryptoMetrics.success(CryptoOperation.PGP_ENCRYPT, null, result.getBytes(), start);
+		return new BatchResult(result, failures);
+	}
+
+	/**
+	 * Encrypts files concurrently into destination directory, file is encrypted under its name into file with
+	 * <code>.pgp</code> extension, or <code>.asc</code> one if armor is used.<br>
+	 * All files are encrypted with the same prepared keys, failure of one file doesn't affect others.
+	 * @param files - files to be encrypted, names must be distinct
+	 * @param destDir - directory for encrypted files, created if absent
+	 * @param keys - {@link PGPKeyPackage} of recipients and signer
+	 * @return {@link FilesResult}
+	 * @throws CryptoException if directory can't be created or processing is interrupted
+	 */
+	public FilesResult encryptFiles(Collection<File> files, File destDir, final PGPKeyPackage keys)
+			throws CryptoException {
+		if (!destDir.isDirectory() && !destDir.mkdirs() && !destDir.isDirectory()) {
+			throw new CryptoException("Can't create directory " + destDir);
+		}
+
+		Map<File, Callable<Result>> tasks = new LinkedHashMap<File, Callable<Result>>();
+		Map<File, CryptoException> failures = new LinkedHashMap<File, CryptoException>();
+		Set<String> names = new HashSet<String>();
+		for (final File source : files) {
+			final File dest = new File(destDir, source.getName() + (armor ? ".asc" : ".pgp"));
+			if (!names.add(dest.getName())) {
+				failures.put(source, new CryptoException("Duplicate output file " + dest));
+				continue;
+			}
+			tasks.put(source, new Callable<Result>() {
+
+				@Override
+				public Result call() throws Exception {
+					return encryptFile(source, dest, keys);
+				}
+			});
+		}
+
+		Map<File, Result> results = new LinkedHashMap<File, Result>();
+		ForkJoinPools.invokeAll(executor, parallelism, tasks, results, failures, "Error encrypting file ",
+				"Files encryption interrupted");
+		return new FilesResult(results, failures);
+	}
+
+	/**
+	 * Encrypts file with prepared keys using channel I/O, incomplete destination file is deleted on failure
+	 * @param source - file to be encrypted
+	 * @param dest - file for encrypted data
+	 * @param keys - {@link PGPKeyPackage} of recipients and signer
+	 * @return {@link Result}
+	 * @throws CryptoException if any error occurred
+	 */
+	public Result encryptFile(File source, File dest, PGPKeyPackage keys) throws CryptoException {
+		InputStream in;
+		ChannelOutputStream out;
+		try {
+			in = Channels.newInputStream(FileChannel.open(source.toPath(), StandardOpenOption.READ));
+		} catch (IOException e) {
+			throw new CryptoException("Can't open file " + source, e);
+		}
+		try {
+			out = new ChannelOutputStream(FileChannel.open(dest.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), BUFFER_SIZE);
+		} catch (IOException e) {
+			closeQuietly(in);
+			throw new CryptoException("Can't create file " + dest, e);
+		}
+
+		boolean done = false;
+		try {
+			Result result = encrypt(out, in, source.getName(), keys);
+			// encrypt closes output quietly and leaves it open if armor is used
+			closeStream(out);
+			if (out.getFailure() != null) {
+				throw new CryptoException("Error writing file " + dest, out.getFailure());
+			}
+			done = true;
+			return result;
+		} finally {
+			closeQuietly(in);
+			if (!done) {
+				closeStream(out);
+				dest.delete();
+			}
+		}
+	}
+
+	private static void closeQuietly(InputStream stream) {
+		try {
+			stream.close();
+		} catch (IOException e) {
+			//ignore
+		}
+	}
+
+	private PGPEncryptedDataGenerator createEncryptedDataGenerator(List<PGPPublicKey> recipients)
+			throws CryptoException, NoSuchProviderException, PGPException {
+		if (recipients.isEmpty()) {
+			throw new CryptoException("Public key not found");
+		}
+		PGPEncryptedDataGenerator encryptedDataGenerator =
+				new PGPEncryptedDataGenerator(symmetricAlgorithm, false, new SecureRandom(), "BC");
+		for (PGPPublicKey recipient : recipients) {
+			encryptedDataGenerator.addMethod(recipient);
+		}
+		return encryptedDataGenerator;
+	}
+
+	/**
+	 * Writes signed and compressed literal data, i.e. content of encrypted data packet
+	 */
+	@SuppressWarnings("unchecked")
+	private Result writePayload(OutputStream target, InputStream data, String fileName, PGPKeyPackage keys)
+			throws CryptoException {
+
+		long bytes = 0;
 		PGPCompressedDataGenerator compressedDataGenerator = null;
 		OutputStream compressedOutputStream = null;
+		OutputStream payloadOutputStream = target;
 		PGPSignatureGenerator signatureGenerator = null;
 		PGPLiteralDataGenerator literalDataGenerator = null;
 		OutputStream literalOutputStream = null;
 
-		PGPPublicKey encryptionKey = null;
-		PGPSecretKey signatureKey = null;
+		PGPSecretKey signatureKey = keys.getSignatureKey();
 
 		boolean wasError = false;
+		byte[] buf = new byte[BUFFER_SIZE];
+		int algorithm = compression;
+		int level = Deflater.DEFAULT_COMPRESSION;
+		double sampleRatio = -1;
+		boolean packetSkipped = false;
 
 		try {
-			try {
-				encryptionKey = readPublicKey(pubKeyStream);
-			} catch (IOException e) {
-				throw new CryptoException("Error reading public key", e);
-			}
-			if (encryptionKey == null) {
-				throw new CryptoException("Public key not found");
-			}
-
-			if (privKeyStream != null) {
-				try {
-					signatureKey = readPrivateKey(privKeyStream);
-				} catch (Exception e) {
-					throw new CryptoException("Error reading public key", e);
-				}
-				if (signatureKey == null) {
-					throw new CryptoException("Private key not found");
+			int len = readBlock(data, buf);
+			if (adaptiveCompression && compression != CompressionAlgorithmTags.UNCOMPRESSED) {
+				sampleRatio = sampleRatio(buf, len);
+				if (1 - sampleRatio < minCompressionGain) {
+					algorithm = CompressionAlgorithmTags.UNCOMPRESSED;
+					packetSkipped = true;
+				} else if (1 - sampleRatio < fastCompressionGain
+						&& (algorithm == CompressionAlgorithmTags.ZIP || algorithm == CompressionAlgorithmTags.ZLIB)) {
+					// deflater level, BZIP2 has no levels
+					level = Deflater.BEST_SPEED;
 				}
 			}
 
-			encryptedDataGenerator =
-					new PGPEncryptedDataGenerator(symmetricAlgorithm, false, new SecureRandom(), "BC");
-			encryptedDataGenerator.addMethod(encryptionKey);
-			encryptedOutputStream = encryptedDataGenerator.open(output, new byte[BUFFER_SIZE]);
-
-			compressedDataGenerator = new PGPCompressedDataGenerator(compression);
-			compressedOutputStream = compressedDataGenerator.open(encryptedOutputStream);
+			// literal data is written without compressed data packet only if adaptive compression rejected data,
+			// configured UNCOMPRESSED keeps the packet
+			if (!packetSkipped) {
+				compressedDataGenerator = new PGPCompressedDataGenerator(algorithm, level);
+				compressedOutputStream = compressedDataGenerator.open(target);
+				payloadOutputStream = compressedOutputStream;
+			}
 
 			if (signatureKey != null) {
 
 				signatureGenerator = new PGPSignatureGenerator(signatureKey.getPublicKey().getAlgorithm(),
 						hashAlgorithm, "BC");
-				PGPPrivateKey signaturePrivateKey = signatureKey.extractPrivateKey(pass.toCharArray(), "BC");
-				signatureGenerator.initSign(PGPSignature.BINARY_DOCUMENT, signaturePrivateKey);
+				signatureGenerator.initSign(PGPSignature.BINARY_DOCUMENT, keys.getSignaturePrivateKey());
 
 				Iterator<String> it = signatureKey.getPublicKey().getUserIDs();
 				if (it.hasNext()) {
@@ -127,20 +528,21 @@ public class PGPEncoder {
 					signatureSubpacketGenerator.setSignerUserID(false, it.next());
 					signatureGenerator.setHashedSubpackets(signatureSubpacketGenerator.generate());
 				}
-				signatureGenerator.generateOnePassVersion(false).encode(compressedOutputStream);
+				signatureGenerator.generateOnePassVersion(false).encode(payloadOutputStream);
 			}
 
 			literalDataGenerator = new PGPLiteralDataGenerator();
-			literalOutputStream = literalDataGenerator.open(compressedOutputStream, PGPLiteralData.BINARY, fileName,
+			literalOutputStream = literalDataGenerator.open(payloadOutputStream, PGPLiteralData.BINARY, fileName,
 					new Date(), new byte[BUFFER_SIZE]);
 
-			int len;
-			byte[] buf = new byte[128];
-			while ((len = data.read(buf)) > -1) {
+			// first block is already read
+			while (len > -1) {
+				bytes += len;
 				literalOutputStream.write(buf, 0, len);
 				if (signatureGenerator != null) {
 					signatureGenerator.update(buf, 0, len);
 				}
+				len = data.read(buf);
 			}
 		} catch (Exception e) {
 			wasError = true;
@@ -158,7 +560,7 @@ public class PGPEncoder {
 			}
 			if (signatureGenerator != null && !wasError) {
 				try {
-					signatureGenerator.generate().encode(compressedOutputStream);
+					signatureGenerator.generate().encode(payloadOutputStream);
 				} catch (Exception e) {
 					throw new CryptoException("Error creating signature", e);
 				}
@@ -170,52 +572,65 @@ public class PGPEncoder {
 				}
 			} catch (IOException e) {
 			}
-			closeStream(encryptedOutputStream);
-			try {
-				if (encryptedDataGenerator != null) {
-					encryptedDataGenerator.close();
-				}
-			} catch (IOException e) {
-			}
-			closeStream(output);
 		}
+		return new Result(bytes, algorithm, level, sampleRatio);
 	}
 
-	@SuppressWarnings("unchecked")
-	private PGPSecretKey readPrivateKey(InputStream privateStream) throws IOException, PGPException {
+	/**
+	 * Reads stream until buffer is full or stream is ended
+	 * @return count of bytes read, -1 if stream is empty
+	 */
+	private static int readBlock(InputStream data, byte[] buf) throws IOException {
+		int total = 0;
+		while (total < buf.length) {
+			int len = data.read(buf, total, buf.length - total);
+			if (len < 0) {
+				return total == 0 ? -1 : total;
+			}
+			total += len;
+		}
+		return total;
+	}
 
+	/**
+	 * Estimates compressibility of data by fastest deflate of its block
+	 * @return ratio of compressed size to original size
+	 */
+	private static double sampleRatio(byte[] buf, int len) {
+		if (len <= 0) {
+			return 1;
+		}
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
 		try {
-			PGPSecretKeyRing ring = new PGPSecretKeyRing(PGPUtil.getDecoderStream(privateStream));
-
-			Iterator<PGPSecretKey> keys = ring.getSecretKeys();
-			while (keys.hasNext()) {
-				PGPSecretKey key = keys.next();
-				if (key.isSigningKey()) {
-					return key;
-				}
+			deflater.setInput(buf, 0, len);
+			deflater.finish();
+			byte[] scratch = new byte[8192];
+			long compressed = 0;
+			while (!deflater.finished()) {
+				compressed += deflater.deflate(scratch);
 			}
-			return null;
+			return (double) compressed / len;
 		} finally {
-			privateStream.close();
+			deflater.end();
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private PGPPublicKey readPublicKey(InputStream pubKeyStream) throws IOException {
-		try {
-			PGPPublicKeyRing ring = new PGPPublicKeyRing(PGPUtil.getDecoderStream(pubKeyStream));
+	/**
+	 * @param executor the executor encrypting data for several recipients and file sets, shared pool is used by default
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
 
-			Iterator<PGPPublicKey> keys = ring.getPublicKeys();
-			while (keys.hasNext()) {
-				PGPPublicKey key = keys.next();
-				if (key.isEncryptionKey()) {
-					return key;
-				}
-			}
-			return null;
-		} finally {
-			pubKeyStream.close();
+	/**
+	 * @param parallelism the parallelism to set, count of files encrypted concurrently; shared pool with parallelism
+	 * of available processors is used by default, executor overrides it
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
 		}
+		this.parallelism = parallelism;
 	}
 
 	/**
@@ -225,6 +640,31 @@ public class PGPEncoder {
 		this.armor = armor;
 	}
 
+	/**
+	 * @param adaptiveCompression true to choose compression by compressibility of first data block: data compressing
+	 *            worse than minimal gain is written without compressed data packet, data compressing worse than fast
+	 *            gain is compressed with fastest level by {@link CompressionAlgorithmTags#ZIP} and
+	 *            {@link CompressionAlgorithmTags#ZLIB}
+	 */
+	public void setAdaptiveCompression(boolean adaptiveCompression) {
+		this.adaptiveCompression = adaptiveCompression;
+	}
+
+	/**
+	 * @param minCompressionGain the minimal share of size saved by compression of sampled block, 0.05 by default
+	 */
+	public void setMinCompressionGain(double minCompressionGain) {
+		this.minCompressionGain = minCompressionGain;
+	}
+
+	/**
+	 * @param fastCompressionGain the share of size saved by compression of sampled block below which fastest level is
+	 *            used, 0.25 by default
+	 */
+	public void setFastCompressionGain(double fastCompressionGain) {
+		this.fastCompressionGain = fastCompressionGain;
+	}
+
 	/**
 	 * @param compression the compression to set
 	 */
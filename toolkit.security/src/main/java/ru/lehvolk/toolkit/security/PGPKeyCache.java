@@ -0,0 +1,261 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+
+/**
+ * Thread-safe cache of PGP keys loaded from key ring files.<br>
+ * Keys are cached by canonical path of file and reloaded when file is modified. Loaded public keys are also available
+ * by fingerprint.<br>
+ * By default private key is extracted on every request, so every caller proves its password by slow password
+ * hashing of PGP. Callers signing repeatedly should keep the returned {@link PGPKeyPackage} instead of requesting it
+ * again. With {@link #setCachePrivateKeys(boolean)} extracted private key is cached and later requests only compare
+ * password with its salted SHA-256 digest. It saves the slow hashing, but the cache then keeps the extracted key
+ * together with fast, brute-forceable verifier of password for as long as key is cached.
+ */
+public class PGPKeyCache {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int SALT_SIZE = 16;
+
+	/**
+	 * Loaded key with state of its file
+	 */
+	private static class FileKey {
+
+		private final long lastModified;
+		private final long length;
+
+		FileKey(long lastModified, long length) {
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		boolean isValid(File file) {
+			return lastModified == file.lastModified() && length == file.length();
+		}
+	}
+
+	/**
+	 * Loaded public key
+	 */
+	private static final class PublicFileKey extends FileKey {
+
+		private final PGPPublicKey key;
+
+		PublicFileKey(long lastModified, long length, PGPPublicKey key) {
+			super(lastModified, length);
+			this.key = key;
+		}
+	}
+
+	/**
+	 * Loaded secret key, with extracted private key and digest of its password if private keys are cached
+	 */
+	private static final class SecretFileKey extends FileKey {
+
+		private final PGPSecretKey key;
+		private final PGPPrivateKey privateKey;
+		private final byte[] salt;
+		private final byte[] passDigest;
+
+		SecretFileKey(long lastModified, long length, PGPSecretKey key) {
+			super(lastModified, length);
+			this.key = key;
+			privateKey = null;
+			salt = null;
+			passDigest = null;
+		}
+
+		SecretFileKey(long lastModified, long length, PGPSecretKey key, PGPPrivateKey privateKey, String pass)
+				throws CryptoException {
+			super(lastModified, length);
+			this.key = key;
+			this.privateKey = privateKey;
+			salt = new byte[SALT_SIZE];
+			try {
+				KeyGenerators.nextBytes(salt);
+			} catch (GeneralSecurityException e) {
+				throw new CryptoException("Error generating salt", e);
+			}
+			passDigest = passDigest(salt, pass);
+		}
+
+		boolean checkPass(String pass) {
+			return MessageDigest.isEqual(passDigest, passDigest(salt, pass));
+		}
+	}
+
+	private final ConcurrentMap<String, PublicFileKey> publicKeys = new ConcurrentHashMap<String, PublicFileKey>();
+	private final ConcurrentMap<String, SecretFileKey> secretKeys = new ConcurrentHashMap<String, SecretFileKey>();
+	private final ConcurrentMap<String, PGPPublicKey> fingerprints = new ConcurrentHashMap<String, PGPPublicKey>();
+	private volatile boolean cachePrivateKeys;
+
+	/**
+	 * Returns keys for encryption without signing
+	 * @param publicKeyFile - public key ring file of recipient
+	 * @return {@link PGPKeyPackage}
+	 * @throws CryptoException if key can't be read
+	 */
+	public PGPKeyPackage getKeys(File publicKeyFile) throws CryptoException {
+		return new PGPKeyPackage(getPublicKey(publicKeyFile), null, null);
+	}
+
+	/**
+	 * Returns keys for encryption and signing
+	 * @param publicKeyFile - public key ring file of recipient
+	 * @param privateKeyFile - secret key ring file for signing
+	 * @param pass - password for private key
+	 * @return {@link PGPKeyPackage}
+	 * @throws CryptoException if keys can't be read or password is wrong
+	 */
+	public PGPKeyPackage getKeys(File publicKeyFile, File privateKeyFile, String pass) throws CryptoException {
+		PGPKeyPackage signing = getSigningKeys(privateKeyFile, pass);
+		return new PGPKeyPackage(getPublicKey(publicKeyFile), signing.getSignatureKey(),
+				signing.getSignaturePrivateKey());
+	}
+
+	/**
+	 * Returns keys for signing only
+	 * @param privateKeyFile - secret key ring file for signing
+	 * @param pass - password for private key
+	 * @return {@link PGPKeyPackage} without recipients
+	 * @throws CryptoException if key can't be read or password is wrong
+	 */
+	public PGPKeyPackage getSigningKeys(File privateKeyFile, String pass) throws CryptoException {
+		String path = path(privateKeyFile);
+		SecretFileKey cached = secretKeys.get(path);
+		if (cached != null && cached.isValid(privateKeyFile)) {
+			if (cached.privateKey == null) {
+				return new PGPKeyPackage(cached.key, PGPKeyPackage.extractPrivateKey(cached.key, pass));
+			}
+			if (!cached.checkPass(pass)) {
+				throw new CryptoException("Error extracting private key");
+			}
+			return new PGPKeyPackage(cached.key, cached.privateKey);
+		}
+		long lastModified = privateKeyFile.lastModified();
+		long length = privateKeyFile.length();
+		PGPSecretKey key = PGPKeyPackage.readSecretKey(open(privateKeyFile));
+		PGPPrivateKey privateKey = PGPKeyPackage.extractPrivateKey(key, pass);
+		secretKeys.put(path, cachePrivateKeys ? new SecretFileKey(lastModified, length, key, privateKey, pass)
+				: new SecretFileKey(lastModified, length, key));
+		return new PGPKeyPackage(key, privateKey);
+	}
+
+	/**
+	 * @param file - public key ring file
+	 * @return encryption key of the ring
+	 * @throws CryptoException if key can't be read
+	 */
+	public PGPPublicKey getPublicKey(File file) throws CryptoException {
+		String path = path(file);
+		PublicFileKey cached = publicKeys.get(path);
+		if (cached != null && cached.isValid(file)) {
+			return cached.key;
+		}
+		// file state is taken before reading, so modification during reading causes reload next time
+		long lastModified = file.lastModified();
+		long length = file.length();
+		PublicFileKey loaded = new PublicFileKey(lastModified, length, PGPKeyPackage.readPublicKey(open(file)));
+		PublicFileKey replaced = publicKeys.put(path, loaded);
+		if (replaced != null) {
+			fingerprints.remove(Crypto.toHex(replaced.key.getFingerprint()), replaced.key);
+		}
+		fingerprints.put(Crypto.toHex(loaded.key.getFingerprint()), loaded.key);
+		return loaded.key;
+	}
+
+	/**
+	 * @param fingerprint - hex-encoded fingerprint
+	 * @return public key loaded by this cache earlier or null if not loaded or fingerprint is null
+	 */
+	public PGPPublicKey getPublicKey(String fingerprint) {
+		if (fingerprint == null) {
+			return null;
+		}
+		return fingerprints.get(fingerprint.toLowerCase());
+	}
+
+	/**
+	 * Removes keys of given file, they will be read again on next request
+	 * @param file - key ring file
+	 */
+	public void invalidate(File file) {
+		String path;
+		try {
+			path = path(file);
+		} catch (CryptoException e) {
+			return;
+		}
+		PublicFileKey removed = publicKeys.remove(path);
+		if (removed != null) {
+			fingerprints.remove(Crypto.toHex(removed.key.getFingerprint()), removed.key);
+		}
+		secretKeys.remove(path);
+	}
+
+	/**
+	 * Removes all cached keys
+	 */
+	public void clear() {
+		publicKeys.clear();
+		secretKeys.clear();
+		fingerprints.clear();
+	}
+
+	/**
+	 * @param cachePrivateKeys true to cache extracted private keys and check passwords of later requests against
+	 * their salted SHA-256 digest instead of slow password hashing of PGP, false by default. Disabling drops cached
+	 * private keys.
+	 */
+	public void setCachePrivateKeys(boolean cachePrivateKeys) {
+		this.cachePrivateKeys = cachePrivateKeys;
+		if (!cachePrivateKeys) {
+			secretKeys.clear();
+		}
+	}
+
+	private static String path(File file) throws CryptoException {
+		try {
+			return file.getCanonicalPath();
+		} catch (IOException e) {
+			throw new CryptoException("Can't resolve key file " + file, e);
+		}
+	}
+
+	private static FileInputStream open(File file) throws CryptoException {
+		try {
+			return new FileInputStream(file);
+		} catch (IOException e) {
+			throw new CryptoException("Can't open key file " + file, e);
+		}
+	}
+
+	private static byte[] passDigest(byte[] salt, String pass) {
+		MessageDigest digest;
+		try {
+			digest = DigestCache.acquire("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try {
+			digest.update(salt);
+			digest.update(pass.getBytes(UTF8));
+			return digest.digest();
+		} finally {
+			DigestCache.release(digest);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
+import org.bouncycastle.openpgp.PGPUtil;
+
+/**
+ * Parsed PGP keys used by {@link PGPEncoder}: public keys of recipients and optional extracted signing key.<br>
+ * Parsing of key rings and extraction of private key (password hashing is deliberately slow) are done once, so the
+ * package can be reused by concurrent encryptions. See {@link PGPKeyCache} for keys loaded from files.
+ */
+public class PGPKeyPackage {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	private final List<PGPPublicKey> encryptionKeys;
+	private final PGPSecretKey signatureKey;
+	private final PGPPrivateKey signaturePrivateKey;
+
+	/**
+	 * Constructs instance with specified keys
+	 *
+	 * @param encryptionKey - public key of recipient
+	 * @param signatureKey - secret key for signing, may be null
+	 * @param signaturePrivateKey - private key extracted from signature key, may be null if no signing required
+	 */
+	public PGPKeyPackage(PGPPublicKey encryptionKey, PGPSecretKey signatureKey, PGPPrivateKey signaturePrivateKey) {
+		this(Collections.singletonList(encryptionKey), signatureKey, signaturePrivateKey);
+		if (encryptionKey == null) {
+			throw new IllegalArgumentException("Encryption key is mandatory");
+		}
+	}
+
+	/**
+	 * Constructs instance for several recipients, data encrypted with it can be decrypted by any of them
+	 *
+	 * @param encryptionKeys - public keys of recipients, may be empty if package is used for signing only
+	 * @param signatureKey - secret key for signing, may be null
+	 * @param signaturePrivateKey - private key extracted from signature key, may be null if no signing required
+	 */
+	public PGPKeyPackage(List<PGPPublicKey> encryptionKeys, PGPSecretKey signatureKey,
+			PGPPrivateKey signaturePrivateKey) {
+		if (encryptionKeys == null) {
+			throw new IllegalArgumentException("Encryption keys are mandatory");
+		}
+		if ((signatureKey == null) != (signaturePrivateKey == null)) {
+			throw new IllegalArgumentException("Signature keys must be specified together");
+		}
+		this.encryptionKeys = Collections.unmodifiableList(new ArrayList<PGPPublicKey>(encryptionKeys));
+		this.signatureKey = signatureKey;
+		this.signaturePrivateKey = signaturePrivateKey;
+	}
+
+	/**
+	 * Constructs instance for signing only
+	 *
+	 * @param signatureKey - secret key for signing
+	 * @param signaturePrivateKey - private key extracted from signature key
+	 */
+	public PGPKeyPackage(PGPSecretKey signatureKey, PGPPrivateKey signaturePrivateKey) {
+		this(Collections.<PGPPublicKey> emptyList(), signatureKey, signaturePrivateKey);
+		if (signatureKey == null) {
+			throw new IllegalArgumentException("Signature key is mandatory");
+		}
+	}
+
+	/**
+	 * Reads keys from key ring streams, streams are closed
+	 * @param pubKeyStream - public key to encrypt {@link InputStream}
+	 * @param privKeyStream - private key for signing, may be null
+	 * @param pass - password for private key
+	 * @return {@link PGPKeyPackage}
+	 * @throws CryptoException if keys can't be read or private key can't be extracted
+	 */
+	public static PGPKeyPackage read(InputStream pubKeyStream, InputStream privKeyStream, String pass)
+			throws CryptoException {
+		PGPPublicKey encryptionKey = readPublicKey(pubKeyStream);
+		if (privKeyStream == null) {
+			return new PGPKeyPackage(encryptionKey, null, null);
+		}
+		PGPSecretKey signatureKey = readSecretKey(privKeyStream);
+		return new PGPKeyPackage(encryptionKey, signatureKey, extractPrivateKey(signatureKey, pass));
+	}
+
+	/**
+	 * @param pubKeyStream - public key ring {@link InputStream}, stream is closed
+	 * @return first encryption key of the ring
+	 * @throws CryptoException if key can't be read or not found
+	 */
+	@SuppressWarnings("unchecked")
+	static PGPPublicKey readPublicKey(InputStream pubKeyStream) throws CryptoException {
+		try {
+			PGPPublicKeyRing ring = new PGPPublicKeyRing(PGPUtil.getDecoderStream(pubKeyStream));
+
+			Iterator<PGPPublicKey> keys = ring.getPublicKeys();
+			while (keys.hasNext()) {
+				PGPPublicKey key = keys.next();
+				if (key.isEncryptionKey()) {
+					return key;
+				}
+			}
+		} catch (IOException e) {
+			throw new CryptoException("Error reading public key", e);
+		} finally {
+			closeQuietly(pubKeyStream);
+		}
+		throw new CryptoException("Public key not found");
+	}
+
+	/**
+	 * @param privKeyStream - secret key ring {@link InputStream}, stream is closed
+	 * @return first signing key of the ring
+	 * @throws CryptoException if key can't be read or not found
+	 */
+	@SuppressWarnings("unchecked")
+	static PGPSecretKey readSecretKey(InputStream privKeyStream) throws CryptoException {
+		try {
+			PGPSecretKeyRing ring = new PGPSecretKeyRing(PGPUtil.getDecoderStream(privKeyStream));
+
+			Iterator<PGPSecretKey> keys = ring.getSecretKeys();
+			while (keys.hasNext()) {
+				PGPSecretKey key = keys.next();
+				if (key.isSigningKey()) {
+					return key;
+				}
+			}
+		} catch (Exception e) {
+			throw new CryptoException("Error reading private key", e);
+		} finally {
+			closeQuietly(privKeyStream);
+		}
+		throw new CryptoException("Private key not found");
+	}
+
+	/**
+	 * @param pubKeyStream - public key ring {@link InputStream}, stream is closed
+	 * @return master key and subkeys of the ring
+	 * @throws CryptoException if keys can't be read
+	 */
+	@SuppressWarnings("unchecked")
+	static List<PGPPublicKey> readPublicKeys(InputStream pubKeyStream) throws CryptoException {
+		try {
+			PGPPublicKeyRing ring = new PGPPublicKeyRing(PGPUtil.getDecoderStream(pubKeyStream));
+
+			List<PGPPublicKey> result = new ArrayList<PGPPublicKey>();
+			Iterator<PGPPublicKey> keys = ring.getPublicKeys();
+			while (keys.hasNext()) {
+				result.add(keys.next());
+			}
+			return result;
+		} catch (IOException e) {
+			throw new CryptoException("Error reading public key", e);
+		} finally {
+			closeQuietly(pubKeyStream);
+		}
+	}
+
+	/**
+	 * @param privKeyStream - secret key rings {@link InputStream}, stream is closed
+	 * @return all secret keys of the rings, looked up by key id
+	 * @throws CryptoException if keys can't be read
+	 */
+	static PGPSecretKeyRingCollection readSecretKeys(InputStream privKeyStream) throws CryptoException {
+		try {
+			return new PGPSecretKeyRingCollection(PGPUtil.getDecoderStream(privKeyStream));
+		} catch (Exception e) {
+			throw new CryptoException("Error reading private key", e);
+		} finally {
+			closeQuietly(privKeyStream);
+		}
+	}
+
+	/**
+	 * @param key - secret key
+	 * @param pass - password for private key
+	 * @return extracted private key
+	 * @throws CryptoException if password is wrong
+	 */
+	static PGPPrivateKey extractPrivateKey(PGPSecretKey key, String pass) throws CryptoException {
+		try {
+			return key.extractPrivateKey(pass.toCharArray(), "BC");
+		} catch (PGPException e) {
+			throw new CryptoException("Error extracting private key", e);
+		} catch (Exception e) {
+			throw new CryptoException("Error extracting private key", e);
+		}
+	}
+
+	private static void closeQuietly(InputStream stream) {
+		try {
+			stream.close();
+		} catch (IOException e) {
+			//ignore
+		}
+	}
+
+	/**
+	 * @return the encryptionKey of the first recipient, null if package is used for signing only
+	 */
+	public PGPPublicKey getEncryptionKey() {
+		return encryptionKeys.isEmpty() ? null : encryptionKeys.get(0);
+	}
+
+	/**
+	 * @return the unmodifiable list of encryptionKeys of all recipients
+	 */
+	public List<PGPPublicKey> getEncryptionKeys() {
+		return encryptionKeys;
+	}
+
+	/**
+	 * @return the signatureKey, null if no signing required
+	 */
+	public PGPSecretKey getSignatureKey() {
+		return signatureKey;
+	}
+
+	/**
+	 * @return the signaturePrivateKey, null if no signing required
+	 */
+	public PGPPrivateKey getSignaturePrivateKey() {
+		return signaturePrivateKey;
+	}
+
+	/**
+	 * @return hex-encoded fingerprint of encryption key of the first recipient, null if there are no recipients
+	 */
+	public String getFingerprint() {
+		PGPPublicKey key = getEncryptionKey();
+		return key == null ? null : Crypto.toHex(key.getFingerprint());
+	}
+}
@@ -0,0 +1,362 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPObjectFactory;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.PGPSignatureGenerator;
+import org.bouncycastle.openpgp.PGPSignatureList;
+import org.bouncycastle.openpgp.PGPUtil;
+
+/**
+ * Class contains methods for creating and verifying detached PGP signatures.<br>
+ * Data is hashed as stream, so signing doesn't depend on size of data and needs no encryption pass. Signing keys are
+ * taken from {@link PGPKeyPackage}, e.g. cached by {@link PGPKeyCache}. Sets of files may be signed and verified
+ * concurrently.
+ */
+public class PGPSignatures {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Result of processing of file set
+	 */
+	public static class Result {
+
+		private final List<File> completed;
+		private final Map<File, CryptoException> failures;
+
+		Result(List<File> completed, Map<File, CryptoException> failures) {
+			this.completed = completed;
+			this.failures = failures;
+		}
+
+		/**
+		 * @return the files signed or verified successfully
+		 */
+		public List<File> getCompleted() {
+			return completed;
+		}
+
+		/**
+		 * @return the failures by data file, including wrong signatures
+		 */
+		public Map<File, CryptoException> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * @return true if all files were processed successfully
+		 */
+		public boolean isSuccessful() {
+			return failures.isEmpty();
+		}
+	}
+
+	private int hashAlgorithm = HashAlgorithmTags.SHA256;
+	private boolean armor = false;
+	private int bufferSize = BUFFER_SIZE;
+	private ExecutorService executor;
+	private int parallelism;
+
+	/**
+	 * Creates detached signature of data
+	 * @param data - data to be signed {@link InputStream}
+	 * @param signature - {@link OutputStream} where signature will be passed, stream is closed
+	 * @param keys - {@link PGPKeyPackage} with signing key
+	 * @throws CryptoException if any error occurred
+	 */
+	public void sign(InputStream data, OutputStream signature, PGPKeyPackage keys) throws CryptoException {
+		long start = CryptoMetrics.start();
+		PGPSecretKey signatureKey = keys.getSignatureKey();
+		OutputStream output = signature;
+		try {
+			if (signatureKey == null) {
+				throw new CryptoException("Private key not found");
+			}
+			PGPSignatureGenerator signatureGenerator =
+					new PGPSignatureGenerator(signatureKey.getPublicKey().getAlgorithm(), hashAlgorithm, "BC");
+			signatureGenerator.initSign(PGPSignature.BINARY_DOCUMENT, keys.getSignaturePrivateKey());
+
+			byte[] buf = new byte[bufferSize];
+			long bytes = 0;
+			int len;
+			while ((len = data.read(buf)) > -1) {
+				bytes += len;
+				signatureGenerator.update(buf, 0, len);
+			}
+
+			if (armor) {
+				output = new ArmoredOutputStream(signature);
+			}
+			signatureGenerator.generate().encode(output);
+			// armored stream doesn't close underlying one
+			if (output != signature) {
+				output.close();
+			}
+			signature.close();
+			CryptoMetrics.success(CryptoOperation.PGP_SIGN, null, bytes, start);
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.PGP_SIGN, null, start);
+			closeQuietly(signature);
+			if (e instanceof CryptoException) {
+				throw (CryptoException) e;
+			}
+			throw new CryptoException("Error creating signature", e);
+		}
+	}
+
+	/**
+	 * Verifies detached signature of data
+	 * @param data - signed data {@link InputStream}
+	 * @param signature - signature {@link InputStream}, binary or armored
+	 * @param key - public key of signer
+	 * @return true if signature is valid
+	 * @throws CryptoException if signature of given key not found or any error occurred
+	 */
+	public boolean verify(InputStream data, InputStream signature, PGPPublicKey key) throws CryptoException {
+		long start = CryptoMetrics.start();
+		try {
+			PGPSignature candidate = readSignature(signature, key);
+			candidate.initVerify(key, "BC");
+
+			byte[] buf = new byte[bufferSize];
+			long bytes = 0;
+			int len;
+			while ((len = data.read(buf)) > -1) {
+				bytes += len;
+				candidate.update(buf, 0, len);
+			}
+			boolean valid = candidate.verify();
+			CryptoMetrics.success(CryptoOperation.PGP_VERIFY, null, bytes, start);
+			return valid;
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.PGP_VERIFY, null, start);
+			if (e instanceof CryptoException) {
+				throw (CryptoException) e;
+			}
+			throw new CryptoException("Error verifying signature", e);
+		}
+	}
+
+	/**
+	 * Creates detached signature of file using channel I/O
+	 * @param data - file to be signed
+	 * @param signature - file for signature
+	 * @param keys - {@link PGPKeyPackage} with signing key
+	 * @throws CryptoException if any error occurred
+	 */
+	public void signFile(File data, File signature, PGPKeyPackage keys) throws CryptoException {
+		InputStream in = open(data);
+		ChannelOutputStream out;
+		try {
+			out = new ChannelOutputStream(FileChannel.open(signature.toPath(), StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING), bufferSize);
+		} catch (IOException e) {
+			closeQuietly(in);
+			throw new CryptoException("Can't create file " + signature, e);
+		}
+		boolean done = false;
+		try {
+			// output is closed by sign
+			sign(in, out, keys);
+			done = true;
+		} finally {
+			closeQuietly(in);
+			if (!done) {
+				signature.delete();
+			}
+		}
+	}
+
+	/**
+	 * Verifies detached signature of file using channel I/O
+	 * @param data - signed file
+	 * @param signature - signature file
+	 * @param key - public key of signer
+	 * @return true if signature is valid
+	 * @throws CryptoException if signature of given key not found or any error occurred
+	 */
+	public boolean verifyFile(File data, File signature, PGPPublicKey key) throws CryptoException {
+		InputStream in = open(data);
+		try {
+			InputStream sig = open(signature);
+			try {
+				return verify(in, sig, key);
+			} finally {
+				closeQuietly(sig);
+			}
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Creates detached signatures of files concurrently, signature is written next to file into file with
+	 * <code>.sig</code> extension, or <code>.asc</code> one if armor is used
+	 * @param files - files to be signed
+	 * @param keys - {@link PGPKeyPackage} with signing key
+	 * @return {@link Result}
+	 * @throws CryptoException if processing is interrupted
+	 */
+	public Result signFiles(Collection<File> files, final PGPKeyPackage keys) throws CryptoException {
+		Map<File, Callable<Void>> tasks = new LinkedHashMap<File, Callable<Void>>();
+		for (final File file : files) {
+			tasks.put(file, new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					signFile(file, signatureFile(file), keys);
+					return null;
+				}
+			});
+		}
+		return process(tasks);
+	}
+
+	/**
+	 * Verifies detached signatures of files concurrently, signature is read from file next to data file with
+	 * <code>.sig</code> extension, or <code>.asc</code> one if armor is used
+	 * @param files - signed files
+	 * @param key - public key of signer
+	 * @return {@link Result}, wrong signatures are reported as failures
+	 * @throws CryptoException if processing is interrupted
+	 */
+	public Result verifyFiles(Collection<File> files, final PGPPublicKey key) throws CryptoException {
+		Map<File, Callable<Void>> tasks = new LinkedHashMap<File, Callable<Void>>();
+		for (final File file : files) {
+			tasks.put(file, new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					if (!verifyFile(file, signatureFile(file), key)) {
+						throw new CryptoException("Signature verification failed");
+					}
+					return null;
+				}
+			});
+		}
+		return process(tasks);
+	}
+
+	private Result process(Map<File, Callable<Void>> tasks) throws CryptoException {
+		Map<File, Void> completed = new LinkedHashMap<File, Void>();
+		Map<File, CryptoException> failures = new LinkedHashMap<File, CryptoException>();
+		ForkJoinPools.invokeAll(executor, parallelism, tasks, completed, failures, "Error processing file ",
+				"Files processing interrupted");
+		return new Result(Collections.unmodifiableList(new ArrayList<File>(completed.keySet())),
+				Collections.unmodifiableMap(failures));
+	}
+
+	private File signatureFile(File file) {
+		return new File(file.getPath() + (armor ? ".asc" : ".sig"));
+	}
+
+	private static PGPSignature readSignature(InputStream signature, PGPPublicKey key)
+			throws IOException, CryptoException {
+		PGPObjectFactory factory = new PGPObjectFactory(PGPUtil.getDecoderStream(signature));
+		Object object = factory.nextObject();
+		if (object instanceof PGPCompressedData) {
+			try {
+				factory = new PGPObjectFactory(((PGPCompressedData) object).getDataStream());
+			} catch (Exception e) {
+				throw new CryptoException("Error reading signature", e);
+			}
+			object = factory.nextObject();
+		}
+		if (!(object instanceof PGPSignatureList)) {
+			throw new CryptoException("Signature not found");
+		}
+		PGPSignatureList list = (PGPSignatureList) object;
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i).getKeyID() == key.getKeyID()) {
+				return list.get(i);
+			}
+		}
+		throw new CryptoException("Data is not signed by verification key");
+	}
+
+	private static InputStream open(File file) throws CryptoException {
+		try {
+			return Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+		} catch (IOException e) {
+			throw new CryptoException("Can't open file " + file, e);
+		}
+	}
+
+	private static void closeQuietly(Closeable stream) {
+		try {
+			stream.close();
+		} catch (IOException e) {
+			//ignore
+		}
+	}
+
+	/**
+	 * @param hashAlgorithm the hashAlgorithm to set, SHA-256 by default
+	 */
+	public void setHashAlgorithm(int hashAlgorithm) {
+		this.hashAlgorithm = hashAlgorithm;
+	}
+
+	/**
+	 * @param armor the armor to set
+	 */
+	public void setArmor(boolean armor) {
+		this.armor = armor;
+	}
+
+	/**
+	 * @param bufferSize the size of I/O buffers, 64K by default
+	 */
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @param executor the executor to set, e.g. work-stealing pool; overrides parallelism
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @param parallelism the parallelism to set, count of files processed concurrently; shared pool with parallelism
+	 * of available processors is used by default
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		this.parallelism = parallelism;
+	}
+}
@@ -0,0 +1,205 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded concurrent cache of "process" keys made by {@link Crypto#makeProcessKey(SecretKeyPackage, SecretKeyPackage)}.
+ * <br>
+ * Keys are cached by identity of source key packages, so the same {@link RawKeyPackage} instance is returned for the
+ * same pair, which also lets per-thread cipher caches reuse initialized ciphers. Returned packages are shared and
+ * read-only, their {@link RawKeyPackage#getKey()} and {@link RawKeyPackage#getIv()} return copies.<br>
+ * Cache is split into segments with least recently used eviction, entries may also expire after specified time.
+ */
+public class ProcessKeyCache {
+
+	private static final int SEGMENTS = 16;
+
+	/**
+	 * Identity of key packages pair
+	 */
+	private static final class PairKey {
+
+		private final SecretKeyPackage k1;
+		private final SecretKeyPackage k2;
+		private final int hash;
+
+		PairKey(SecretKeyPackage k1, SecretKeyPackage k2) {
+			this.k1 = k1;
+			this.k2 = k2;
+			int h = System.identityHashCode(k1) * 31 + System.identityHashCode(k2);
+			// spread bits, lower ones select segment
+			hash = h ^ (h >>> 16);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PairKey)) {
+				return false;
+			}
+			PairKey other = (PairKey) obj;
+			return k1 == other.k1 && k2 == other.k2;
+		}
+	}
+
+	/**
+	 * Cached key with its expiration time
+	 */
+	private static final class CachedKey {
+
+		private final RawKeyPackage key;
+		private final long expires;
+
+		CachedKey(RawKeyPackage key, long expires) {
+			this.key = key;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Segment of the cache, access ordered map guarded by itself
+	 */
+	private final class Segment extends LinkedHashMap<PairKey, CachedKey> {
+
+		private static final long serialVersionUID = -1728034402945810741L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<PairKey, CachedKey> eldest) {
+			if (size() > capacity) {
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private final Segment[] segments;
+	private final long ttlNanos;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates cache with least recently used eviction only
+	 * @param maxEntries - maximal count of cached keys
+	 */
+	public ProcessKeyCache(int maxEntries) {
+		this(maxEntries, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Creates cache with least recently used eviction and expiration of entries
+	 * @param maxEntries - maximal count of cached keys
+	 * @param ttl - time to live of cached key since its creation, 0 means no expiration
+	 * @param unit - unit of ttl
+	 */
+	public ProcessKeyCache(int maxEntries, long ttl, TimeUnit unit) {
+		if (maxEntries <= 0 || ttl < 0) {
+			throw new IllegalArgumentException("Positive size and non-negative ttl are mandatory");
+		}
+		int count = Math.min(SEGMENTS, Integer.highestOneBit(maxEntries));
+		segments = new Segment[count];
+		// remainder is spread over first segments, so total capacity is exactly maxEntries
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(maxEntries / count + (i < maxEntries % count ? 1 : 0));
+		}
+		ttlNanos = unit.toNanos(ttl);
+	}
+
+	/**
+	 * Returns cached "process" key of given pair or makes and caches it
+	 * @see Crypto#makeProcessKey(SecretKeyPackage, SecretKeyPackage)
+	 * @param k1 - key #1
+	 * @param k2 - key #2
+	 * @return {@link RawKeyPackage} consists "process" key and process IV
+	 */
+	public RawKeyPackage get(SecretKeyPackage k1, SecretKeyPackage k2) {
+		PairKey pair = new PairKey(k1, k2);
+		Segment segment = segments[pair.hash & (segments.length - 1)];
+		long now = ttlNanos > 0 ? System.nanoTime() : 0;
+
+		synchronized (segment) {
+			CachedKey entry = segment.get(pair);
+			if (entry != null && (ttlNanos == 0 || now - entry.expires < 0)) {
+				hits.incrementAndGet();
+				return entry.key;
+			}
+			misses.incrementAndGet();
+			RawKeyPackage key = new CachedProcessKey(Crypto.makeProcessKey(k1, k2));
+			segment.put(pair, new CachedKey(key, now + ttlNanos));
+			return key;
+		}
+	}
+
+	/**
+	 * Removes cached key of given pair, e.g. when one of keys is rotated
+	 * @param k1 - key #1
+	 * @param k2 - key #2
+	 */
+	public void invalidate(SecretKeyPackage k1, SecretKeyPackage k2) {
+		PairKey pair = new PairKey(k1, k2);
+		Segment segment = segments[pair.hash & (segments.length - 1)];
+		synchronized (segment) {
+			segment.remove(pair);
+		}
+	}
+
+	/**
+	 * Removes all cached keys
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return count of cached keys
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return count of requests served from cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return count of requests made new key, including expired entries
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return count of keys evicted because of cache size
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
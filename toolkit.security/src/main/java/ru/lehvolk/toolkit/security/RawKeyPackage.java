@@ -1,5 +1,8 @@
 package ru.lehvolk.toolkit.security;
 
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
 /**
  * Class for encapsulation secret "process" key
  */
@@ -8,22 +11,63 @@ public class RawKeyPackage {
 	private final byte[] iv;
 	private final byte[] key;
 	private final KeyType type;
+	private final CipherMode mode;
+	private SecretKey keySpec;
 
 	/**
-	 * Constructs instants with specified parameters
-	 * 
+	 * Constructs instants with specified parameters, {@link CipherMode#CBC} is used
+	 *
 	 * @param key - secret key byte array
 	 * @param iv - initialization vector byte array
 	 * @param type - type of key
 	 */
 	public RawKeyPackage(byte[] key, byte[] iv, KeyType type) {
-		if (key == null || iv == null || type == null) {
+		this(key, iv, type, CipherMode.CBC);
+	}
+
+	/**
+	 * Constructs instants with specified parameters
+	 *
+	 * @param key - secret key byte array
+	 * @param iv - initialization vector byte array, not used by {@link CipherMode#GCM}
+	 * @param type - type of key
+	 * @param mode - mode of cipher
+	 */
+	public RawKeyPackage(byte[] key, byte[] iv, KeyType type, CipherMode mode) {
+		if (key == null || iv == null || type == null || mode == null) {
 			throw new IllegalArgumentException("All arguments are mandatory!");
 		}
+		checkMode(type, mode);
 
 		this.key = key;
 		this.iv = iv;
 		this.type = type;
+		this.mode = mode;
+	}
+
+	/**
+	 * Constructs instance keeping key material outside, subclass must override {@link #getKey()} and
+	 * {@link #getIv()}
+	 *
+	 * @param type - type of key
+	 * @param mode - mode of cipher
+	 */
+	protected RawKeyPackage(KeyType type, CipherMode mode) {
+		if (type == null || mode == null) {
+			throw new IllegalArgumentException("All arguments are mandatory!");
+		}
+		checkMode(type, mode);
+
+		this.key = null;
+		this.iv = null;
+		this.type = type;
+		this.mode = mode;
+	}
+
+	private static void checkMode(KeyType type, CipherMode mode) {
+		if (mode == CipherMode.GCM && type.getIvSize() != 128) {
+			throw new IllegalArgumentException("GCM mode requires key type with 128-bit block");
+		}
 	}
 
 	/**
@@ -46,4 +90,25 @@ public class RawKeyPackage {
 	public KeyType getType() {
 		return type;
 	}
+
+	/**
+	 * @return the mode
+	 */
+	public CipherMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Secret key passed to ciphers, created once, so key bytes are not copied on every cipher initialization
+	 * @return {@link SecretKey} of key bytes
+	 */
+	SecretKey getKeySpec() {
+		// benign race, equal instances may be created concurrently
+		SecretKey spec = keySpec;
+		if (spec == null) {
+			spec = new SecretKeySpec(getKey(), type.getAlias());
+			keySpec = spec;
+		}
+		return spec;
+	}
 }
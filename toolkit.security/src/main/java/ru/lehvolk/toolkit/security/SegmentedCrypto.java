@@ -0,0 +1,431 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+/**
+ * Encrypts files into segmented container, segments are encrypted independently with AES-GCM and processed in
+ * parallel on {@link ForkJoinPool}.<br>
+ * Container layout:
+ * <ul>
+ * <li>header: magic (4 bytes), version (1 byte), segment size (4 bytes), clear data length (8 bytes),
+ * file salt (16 bytes)</li>
+ * <li>segments: encrypted segment data followed by 16 bytes of GCM tag</li>
+ * </ul>
+ * Every file is encrypted with its own subkey HMAC-SHA256(key, salt), so nonces of different files never meet under
+ * the same AES key. IV of segment is made of segment index and flag of last segment, so reordering, truncation or
+ * extension of segments fails authentication. Any segment can be decrypted without reading the whole file.<br>
+ * Only {@link KeyType#AES} keys are supported, IV of key package is not used.
+ */
+public class SegmentedCrypto {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	private static final int MAGIC = 0x544B5347; // "TKSG"
+	private static final byte VERSION = 2;
+	private static final int SALT_SIZE = 16;
+	private static final int HEADER_SIZE = 4 + 1 + 4 + 8 + SALT_SIZE;
+	private static final int TAG_SIZE = 16;
+	private static final int IV_SIZE = 12;
+	private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+	private static final String KDF_ALGORITHM = "HmacSHA256";
+	private static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+	// segment buffers and offsets with tag stay far from int overflow
+	private static final int MAX_SEGMENT_SIZE = 64 << 20;
+	private static final long MAX_SEGMENTS = 1L << 32;
+
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<Cipher>();
+	private static final ThreadLocal<byte[][]> BUFFERS = new ThreadLocal<byte[][]>();
+
+	private int segmentSize = DEFAULT_SEGMENT_SIZE;
+	private ForkJoinPool pool;
+
+	/**
+	 * Header of segmented container
+	 */
+	private static class Header {
+
+		private final int segmentSize;
+		private final long length;
+		private final byte[] salt;
+
+		Header(int segmentSize, long length, byte[] salt) {
+			this.segmentSize = segmentSize;
+			this.length = length;
+			this.salt = salt;
+		}
+
+		long getSegmentCount() {
+			return Math.max(1, (length + segmentSize - 1) / segmentSize);
+		}
+
+		int getClearSize(long index) {
+			return (int) Math.min(segmentSize, length - index * segmentSize);
+		}
+
+		long getEncryptedOffset(long index) {
+			return HEADER_SIZE + index * (segmentSize + TAG_SIZE);
+		}
+
+		long getEncryptedLength() {
+			return getEncryptedOffset(getSegmentCount() - 1) + getClearSize(getSegmentCount() - 1) + TAG_SIZE;
+		}
+
+		ByteBuffer encode() {
+			ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+			buf.putInt(MAGIC).put(VERSION).putInt(segmentSize).putLong(length).put(salt);
+			buf.flip();
+			return buf;
+		}
+
+		static Header decode(FileChannel in) throws IOException, CryptoException {
+			ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE);
+			if (in.size() < HEADER_SIZE) {
+				throw new CryptoException("Not a segmented container");
+			}
+			readFully(in, buf, 0);
+			buf.flip();
+			if (buf.getInt() != MAGIC) {
+				throw new CryptoException("Not a segmented container");
+			}
+			byte version = buf.get();
+			if (version != VERSION) {
+				throw new CryptoException("Unsupported segmented container version " + version);
+			}
+			int segmentSize = buf.getInt();
+			long length = buf.getLong();
+			byte[] salt = new byte[SALT_SIZE];
+			buf.get(salt);
+			if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE || length < 0 || (length - 1) / segmentSize >= MAX_SEGMENTS) {
+				throw new CryptoException("Corrupted segmented container header");
+			}
+			Header header = new Header(segmentSize, length, salt);
+			if (header.getEncryptedLength() != in.size()) {
+				throw new CryptoException("Corrupted segmented container, unexpected size");
+			}
+			return header;
+		}
+	}
+
+	/**
+	 * Processes range of segments, splits it until single segment remains
+	 */
+	private static class SegmentsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 2571840925474733906L;
+
+		private final FileChannel in;
+		private final FileChannel out;
+		private final Header header;
+		private final SecretKey key;
+		private final int mode;
+		private final long from;
+		private final long to;
+		private final AtomicReference<Exception> failure;
+
+		SegmentsTask(FileChannel in, FileChannel out, Header header, SecretKey key, int mode, long from, long to,
+				AtomicReference<Exception> failure) {
+			this.in = in;
+			this.out = out;
+			this.header = header;
+			this.key = key;
+			this.mode = mode;
+			this.from = from;
+			this.to = to;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				long middle = (from + to) >>> 1;
+				invokeAll(new SegmentsTask(in, out, header, key, mode, from, middle, failure),
+						new SegmentsTask(in, out, header, key, mode, middle, to, failure));
+				return;
+			}
+			if (failure.get() != null) {
+				return;
+			}
+			try {
+				processSegment();
+			} catch (Exception e) {
+				failure.compareAndSet(null, e);
+			}
+		}
+
+		private void processSegment() throws Exception {
+			int clearSize = header.getClearSize(from);
+			long clearOffset = from * header.segmentSize;
+			long encryptedOffset = header.getEncryptedOffset(from);
+
+			byte[][] bufs = buffers(header.segmentSize);
+			byte[] src = bufs[0];
+			byte[] dst = bufs[1];
+			Cipher cipher = cipher(key, mode, iv(header, from));
+
+			int len;
+			if (mode == Cipher.ENCRYPT_MODE) {
+				readFully(in, ByteBuffer.wrap(src, 0, clearSize), clearOffset);
+				len = cipher.doFinal(src, 0, clearSize, dst, 0);
+				writeFully(out, ByteBuffer.wrap(dst, 0, len), encryptedOffset);
+			} else {
+				readFully(in, ByteBuffer.wrap(src, 0, clearSize + TAG_SIZE), encryptedOffset);
+				len = cipher.doFinal(src, 0, clearSize + TAG_SIZE, dst, 0);
+				writeFully(out, ByteBuffer.wrap(dst, 0, len), clearOffset);
+			}
+		}
+	}
+
+	/**
+	 * Encrypts specified file into segmented container
+	 * @param source - File with clear content
+	 * @param dest - File for storing segmented container
+	 * @param key - secret key, {@link KeyType#AES} only
+	 * @throws CryptoException if any error occurred
+	 */
+	public void encryptFile(File source, File dest, RawKeyPackage key) throws CryptoException {
+		checkType(key);
+		FileChannel in = null;
+		FileChannel out = null;
+
+		try {
+			in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+
+			byte[] salt = new byte[SALT_SIZE];
+			RANDOM.nextBytes(salt);
+			Header header = new Header(segmentSize, in.size(), salt);
+			if (header.getSegmentCount() > MAX_SEGMENTS) {
+				throw new CryptoException("File is too large for segment size " + segmentSize);
+			}
+			writeFully(out, header.encode(), 0);
+
+			process(in, out, header, fileKey(key, header), Cipher.ENCRYPT_MODE);
+		} catch (CryptoException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CryptoException("Error file processing", e);
+		} finally {
+			closeQuietly(in);
+			closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Decrypts segmented container into specified file
+	 * @param source - File with segmented container
+	 * @param dest - File for storing clear content
+	 * @param key - secret key, {@link KeyType#AES} only
+	 * @throws CryptoException if any error occurred or container is corrupted
+	 */
+	public void decryptFile(File source, File dest, RawKeyPackage key) throws CryptoException {
+		checkType(key);
+		FileChannel in = null;
+		FileChannel out = null;
+
+		try {
+			in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			Header header = Header.decode(in);
+			out = FileChannel.open(dest.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+
+			process(in, out, header, fileKey(key, header), Cipher.DECRYPT_MODE);
+		} catch (CryptoException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CryptoException("Error file processing", e);
+		} finally {
+			closeQuietly(in);
+			closeQuietly(out);
+		}
+	}
+
+	/**
+	 * Decrypts single segment of segmented container
+	 * @param source - File with segmented container
+	 * @param key - secret key, {@link KeyType#AES} only
+	 * @param index - index of segment, starting from 0
+	 * @return clear bytes of segment
+	 * @throws CryptoException if any error occurred or segment is corrupted
+	 */
+	public byte[] decryptSegment(File source, RawKeyPackage key, long index) throws CryptoException {
+		checkType(key);
+		FileChannel in = null;
+
+		try {
+			in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			Header header = Header.decode(in);
+			if (index < 0 || index >= header.getSegmentCount()) {
+				throw new IllegalArgumentException("Segment index out of range: " + index);
+			}
+			byte[] encrypted = new byte[header.getClearSize(index) + TAG_SIZE];
+			readFully(in, ByteBuffer.wrap(encrypted), header.getEncryptedOffset(index));
+
+			return cipher(fileKey(key, header), Cipher.DECRYPT_MODE, iv(header, index)).doFinal(encrypted);
+		} catch (CryptoException e) {
+			throw e;
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CryptoException("Error segment decryption", e);
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	/**
+	 * @param source - File with segmented container
+	 * @return count of segments in container
+	 * @throws CryptoException if file is not a segmented container
+	 */
+	public long getSegmentCount(File source) throws CryptoException {
+		FileChannel in = null;
+
+		try {
+			in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+			return Header.decode(in).getSegmentCount();
+		} catch (IOException e) {
+			throw new CryptoException("Error reading segmented container", e);
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	private void process(FileChannel in, FileChannel out, Header header, SecretKey key, int mode)
+			throws CryptoException {
+		AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		getPool().invoke(new SegmentsTask(in, out, header, key, mode, 0, header.getSegmentCount(), failure));
+		if (failure.get() != null) {
+			throw new CryptoException(mode == Cipher.ENCRYPT_MODE ? "Error encrypting segment"
+					: "Error decrypting segment", failure.get());
+		}
+	}
+
+	private ForkJoinPool getPool() {
+		return pool != null ? pool : ForkJoinPools.getDefault();
+	}
+
+	private static void checkType(RawKeyPackage key) {
+		if (key.getType() != KeyType.AES) {
+			throw new IllegalArgumentException("Only AES keys are supported");
+		}
+	}
+
+	// subkey of file: HMAC-SHA256(key, salt) truncated to size of key
+	private static SecretKey fileKey(RawKeyPackage key, Header header) throws CryptoException {
+		byte[] raw = key.getKey();
+		byte[] derived = null;
+		try {
+			Mac mac = Mac.getInstance(KDF_ALGORITHM);
+			mac.init(new SecretKeySpec(raw, KDF_ALGORITHM));
+			derived = mac.doFinal(header.salt);
+			return new SecretKeySpec(derived, 0, raw.length, key.getType().getAlias());
+		} catch (GeneralSecurityException e) {
+			throw new CryptoException("Error deriving file key", e);
+		} finally {
+			if (key instanceof DirectKeyPackage) {
+				// direct package returns a copy of key
+				Arrays.fill(raw, (byte) 0);
+			}
+			if (derived != null) {
+				Arrays.fill(derived, (byte) 0);
+			}
+		}
+	}
+
+	private static byte[] iv(Header header, long index) {
+		byte[] iv = new byte[IV_SIZE];
+		iv[7] = (byte) (index >>> 24);
+		iv[8] = (byte) (index >>> 16);
+		iv[9] = (byte) (index >>> 8);
+		iv[10] = (byte) index;
+		iv[11] = (byte) (index == header.getSegmentCount() - 1 ? 1 : 0);
+		return iv;
+	}
+
+	private static Cipher cipher(SecretKey key, int mode, byte[] iv) throws Exception {
+		Cipher cipher = CIPHERS.get();
+		if (cipher == null) {
+			cipher = CipherCache.newCipher(TRANSFORMATION);
+			CIPHERS.set(cipher);
+		}
+		cipher.init(mode, key, CipherCache.gcmParameters(cipher, iv));
+		return cipher;
+	}
+
+	private static byte[][] buffers(int segmentSize) {
+		byte[][] bufs = BUFFERS.get();
+		if (bufs == null || bufs[0].length < segmentSize + TAG_SIZE) {
+			bufs = new byte[][] {new byte[segmentSize + TAG_SIZE], new byte[segmentSize + TAG_SIZE]};
+			BUFFERS.set(bufs);
+		}
+		return bufs;
+	}
+
+	private static void readFully(FileChannel in, ByteBuffer buf, long position) throws IOException {
+		long pos = position;
+		while (buf.hasRemaining()) {
+			int count = in.read(buf, pos);
+			if (count < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+			pos += count;
+		}
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buf, long position) throws IOException {
+		long pos = position;
+		while (buf.hasRemaining()) {
+			pos += out.write(buf, pos);
+		}
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+	}
+
+	/**
+	 * @param segmentSize the segmentSize to set, size of clear data in one segment, at most 64 MiB
+	 */
+	public void setSegmentSize(int segmentSize) {
+		if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+			throw new IllegalArgumentException("Segment size must be positive and not greater than 64 MiB");
+		}
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * @param pool the pool to set, shared pool with parallelism of available processors is used by default
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
@@ -0,0 +1,43 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spread over padded cells selected by thread, so concurrent updates rarely touch the same cache line
+ */
+final class StripedCounter {
+
+	// longs per 64 bytes cache line
+	private static final int PADDING = 8;
+	private static final int STRIPES = stripes();
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	/**
+	 * @param value - value to add
+	 */
+	void add(long value) {
+		cells.getAndAdd(((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING, value);
+	}
+
+	/**
+	 * @return sum of cells, not atomic against concurrent updates
+	 */
+	long sum() {
+		long sum = 0;
+		for (int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+
+	// power of two not less than count of processors, at most 64
+	private static int stripes() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int stripes = 1;
+		while (stripes < processors && stripes < 64) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+}
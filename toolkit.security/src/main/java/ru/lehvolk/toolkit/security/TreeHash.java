@@ -0,0 +1,204 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Calculates Merkle tree hash of files, leaf digests are calculated in parallel on {@link ForkJoinPool}.<br>
+ * File is split into chunks of fixed size, tree is built as described in RFC 6962: leaf is hash of
+ * <code>0x00 || chunk</code>, node is hash of <code>0x01 || left || right</code>, left subtree covers the largest
+ * power of two chunks less than count of chunks. Empty file is hashed as single empty chunk.<br>
+ * Result depends on chunk size, so the same chunk size must be used for calculation and verification.
+ */
+public class TreeHash {
+
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	private static final byte LEAF_PREFIX = 0;
+	private static final byte NODE_PREFIX = 1;
+
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>();
+
+	private String algorithm = "SHA-256";
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private ForkJoinPool pool;
+
+	/**
+	 * Carries failure of subtree task through the pool
+	 */
+	private static class SubtreeException extends RuntimeException {
+
+		private static final long serialVersionUID = 4581032569027461172L;
+
+		SubtreeException(Throwable cause) {
+			super(cause);
+		}
+	}
+
+	/**
+	 * Calculates hash of subtree covering chunks range
+	 */
+	private class SubtreeTask extends RecursiveTask<byte[]> {
+
+		private static final long serialVersionUID = -6270139453573596263L;
+
+		private final FileChannel in;
+		private final long size;
+		private final long from;
+		private final long to;
+
+		SubtreeTask(FileChannel in, long size, long from, long to) {
+			this.in = in;
+			this.size = size;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected byte[] compute() {
+			try {
+				if (to - from == 1) {
+					return leaf();
+				}
+				long split = Long.highestOneBit(to - from - 1);
+				SubtreeTask left = new SubtreeTask(in, size, from, from + split);
+				SubtreeTask right = new SubtreeTask(in, size, from + split, to);
+				right.fork();
+				byte[] leftHash = left.compute();
+				byte[] rightHash = right.join();
+				return node(leftHash, rightHash);
+			} catch (SubtreeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new SubtreeException(e);
+			}
+		}
+
+		private byte[] leaf() throws Exception {
+			int len = (int) Math.min(chunkSize, size - from * chunkSize);
+			byte[] buf = buffer();
+			ByteBuffer dst = ByteBuffer.wrap(buf, 0, len);
+			long position = from * chunkSize;
+			while (dst.hasRemaining()) {
+				int count = in.read(dst, position);
+				if (count < 0) {
+					throw new IOException("Unexpected end of file");
+				}
+				position += count;
+			}
+
+			MessageDigest digest = DigestCache.acquire(algorithm);
+			try {
+				digest.update(LEAF_PREFIX);
+				digest.update(buf, 0, len);
+				return digest.digest();
+			} finally {
+				DigestCache.release(digest);
+			}
+		}
+
+		private byte[] node(byte[] left, byte[] right) throws Exception {
+			MessageDigest digest = DigestCache.acquire(algorithm);
+			try {
+				digest.update(NODE_PREFIX);
+				digest.update(left);
+				digest.update(right);
+				return digest.digest();
+			} finally {
+				DigestCache.release(digest);
+			}
+		}
+	}
+
+	/**
+	 * Calculates tree hash of specified file
+	 * @param file - file to be hashed
+	 * @return root hash bytes
+	 * @throws CryptoException if algorithm is not supported or error while reading file occurred
+	 */
+	public byte[] hash(File file) throws CryptoException {
+		FileChannel in = null;
+
+		try {
+			// fail fast on unsupported algorithm
+			DigestCache.release(DigestCache.acquire(algorithm));
+
+			in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			long size = in.size();
+			long chunks = Math.max(1, (size + chunkSize - 1) / chunkSize);
+			return getPool().invoke(new SubtreeTask(in, size, 0, chunks));
+		} catch (SubtreeException e) {
+			Throwable cause = e;
+			// pool may rethrow a copy of task exception wrapping the original one
+			while (cause instanceof SubtreeException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			throw new CryptoException("Error calculating tree hash", cause);
+		} catch (NoSuchAlgorithmException e) {
+			throw new CryptoException("Unsupported digest algorithm " + algorithm, e);
+		} catch (IOException e) {
+			throw new CryptoException("Error reading file", e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculates tree hash of specified file
+	 * @param file - file to be hashed
+	 * @return hex-encoded root hash
+	 * @throws CryptoException if algorithm is not supported or error while reading file occurred
+	 */
+	public String hashHex(File file) throws CryptoException {
+		return Crypto.toHex(hash(file));
+	}
+
+	private byte[] buffer() {
+		byte[] buf = BUFFERS.get();
+		if (buf == null || buf.length < chunkSize) {
+			buf = new byte[chunkSize];
+			BUFFERS.set(buf);
+		}
+		return buf;
+	}
+
+	private ForkJoinPool getPool() {
+		return pool != null ? pool : ForkJoinPools.getDefault();
+	}
+
+	/**
+	 * @param algorithm the algorithm to set, "SHA-256" by default
+	 */
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * @param chunkSize the chunkSize to set, size of file chunk hashed by one leaf
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param pool the pool to set, shared pool with parallelism of available processors is used by default
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+}
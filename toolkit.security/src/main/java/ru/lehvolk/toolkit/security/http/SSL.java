@@ -1,8 +1,11 @@
 package ru.lehvolk.toolkit.security.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -23,6 +26,8 @@ import javax.net.ssl.X509KeyManager;
 import javax.net.ssl.X509TrustManager;
 
 import ru.lehvolk.toolkit.security.CryptoException;
+import ru.lehvolk.toolkit.security.CryptoMetrics;
+import ru.lehvolk.toolkit.security.CryptoOperation;
 
 /**
  * Utility class for working with SSL
@@ -128,57 +133,116 @@ public final class SSL {
 	public static final String JAXWS_SSL_SOCKET_FACTORY = "com.sun.xml.internal.ws.transport.https.client.SSLSocketFactory";
 
 	/**
-	 * Creates {@link SSLContext} according with specified parameters
+	 * Creates {@link SSLContext} according with specified parameters.<br>
+	 * Stores are read on every call, use {@link SSLContextCache} to share contexts of the same configuration.
 	 * @param conf - {@link SSLConfiguration}
 	 * @return initialized SSLSocketFactory
 	 * @throws CryptoException if error while building SSLContext occurred
 	 */
 	public static SSLContext createSSLContext(SSLConfiguration conf) throws CryptoException {
 
+		long start = CryptoMetrics.start();
 		try {
-			KeyManager[] keyManagers = null;
-
-			if (conf.getKeyStorePath() != null && !conf.getKeyStorePath().isEmpty()) {
-				KeyStore keyStore = loadKeyStore(conf.getKeyStorePath(), conf.getKeyStorePassword());
+			KeyStore keyStore = null;
+			if (hasKeyStore(conf)) {
+				keyStore = loadKeyStore(conf.getKeyStorePath(), conf.getKeyStorePassword());
+			}
+			KeyStore trustStore = null;
+			if (hasTrustStore(conf)) {
+				trustStore = loadKeyStore(conf.getTrustStorePath(), conf.getTrustStorePassword());
+			}
+			SSLContext sslContext = initSSLContext(conf, keyStore, trustStore);
+			CryptoMetrics.success(CryptoOperation.SSL_CONTEXT, null, 0, start);
+			return sslContext;
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.SSL_CONTEXT, null, start);
+			throw new CryptoException("Can't create SSLContext", e);
+		}
+	}
 
-				KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-				keyManagerFactory.init(keyStore, conf.getKeyStorePassword().toCharArray());
-				keyManagers = keyManagerFactory.getKeyManagers();
+	/**
+	 * Creates {@link SSLContext} from already read contents of stores
+	 * @param conf - {@link SSLConfiguration}
+	 * @param keyStoreData - content of key store, null if key store is not used
+	 * @param trustStoreData - content of trust store, null if trust store is not used
+	 * @return initialized SSLContext
+	 * @throws CryptoException if error while building SSLContext occurred
+	 */
+	static SSLContext createSSLContext(SSLConfiguration conf, byte[] keyStoreData, byte[] trustStoreData)
+			throws CryptoException {
 
-				if (conf.getForcedAlias() != null) {
-					for (int i = 0; i < keyManagers.length; i++) {
-						if (keyManagers[i] instanceof X509KeyManager) {
-							keyManagers[i] = new AliasForcingKeyManager((X509KeyManager) keyManagers[i], conf.getForcedAlias());
-						}
-					}
-				}
+		long start = CryptoMetrics.start();
+		try {
+			KeyStore keyStore = null;
+			if (keyStoreData != null) {
+				keyStore = loadKeyStore(new ByteArrayInputStream(keyStoreData), conf.getKeyStorePassword());
+			}
+			KeyStore trustStore = null;
+			if (trustStoreData != null) {
+				trustStore = loadKeyStore(new ByteArrayInputStream(trustStoreData), conf.getTrustStorePassword());
 			}
+			SSLContext sslContext = initSSLContext(conf, keyStore, trustStore);
+			CryptoMetrics.success(CryptoOperation.SSL_CONTEXT, null, 0, start);
+			return sslContext;
+		} catch (Exception e) {
+			CryptoMetrics.failure(CryptoOperation.SSL_CONTEXT, null, start);
+			throw new CryptoException("Can't create SSLContext", e);
+		}
+	}
+
+	/**
+	 * @param conf - {@link SSLConfiguration}
+	 * @return true if client certificate is taken from key store
+	 */
+	static boolean hasKeyStore(SSLConfiguration conf) {
+		return conf.getKeyStorePath() != null && !conf.getKeyStorePath().isEmpty();
+	}
+
+	/**
+	 * @param conf - {@link SSLConfiguration}
+	 * @return true if hosts are checked against trust store
+	 */
+	static boolean hasTrustStore(SSLConfiguration conf) {
+		return conf.getCheckHostTrusted() && conf.getTrustStorePath() != null && !conf.getTrustStorePath().isEmpty();
+	}
+
+	private static SSLContext initSSLContext(SSLConfiguration conf, KeyStore keyStore, KeyStore trustStore)
+			throws GeneralSecurityException {
+
+		KeyManager[] keyManagers = null;
 
-			TrustManager[] trustManagers = null;
+		if (keyStore != null) {
+			KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+			keyManagerFactory.init(keyStore, conf.getKeyStorePassword().toCharArray());
+			keyManagers = keyManagerFactory.getKeyManagers();
 
-			if (conf.getCheckHostTrusted()) {
-				if (conf.getTrustStorePath() != null && !conf.getTrustStorePath().isEmpty()) {
-					KeyStore trustStore;
-					trustStore = loadKeyStore(conf.getTrustStorePath(), conf.getTrustStorePassword());
-					TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory
-							.getDefaultAlgorithm());
-					trustManagerFactory.init(trustStore);
-					trustManagers = trustManagerFactory.getTrustManagers();
+			if (conf.getForcedAlias() != null) {
+				for (int i = 0; i < keyManagers.length; i++) {
+					if (keyManagers[i] instanceof X509KeyManager) {
+						keyManagers[i] = new AliasForcingKeyManager((X509KeyManager) keyManagers[i], conf.getForcedAlias());
+					}
 				}
-			} else {
-				trustManagers = new TrustManager[] {dammyTrustManager};
 			}
+		}
 
-			SecureRandom secureRandom = SecureRandom.getInstance("SHA1PRNG", "SUN");
-
-			SSLContext sslContext = SSLContext.getInstance("SSL");
-			sslContext.init(keyManagers, trustManagers, secureRandom);
+		TrustManager[] trustManagers = null;
 
-			return sslContext;
-		} catch (Exception e) {
-			throw new CryptoException("Can't create SSLContext", e);
+		if (conf.getCheckHostTrusted()) {
+			if (trustStore != null) {
+				TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory
+						.getDefaultAlgorithm());
+				trustManagerFactory.init(trustStore);
+				trustManagers = trustManagerFactory.getTrustManagers();
+			}
+		} else {
+			trustManagers = new TrustManager[] {dammyTrustManager};
 		}
 
+		SecureRandom secureRandom = SecureRandom.getInstance("SHA1PRNG", "SUN");
+
+		SSLContext sslContext = SSLContext.getInstance("SSL");
+		sslContext.init(keyManagers, trustManagers, secureRandom);
+		return sslContext;
 	}
 
 	/**
@@ -203,14 +267,19 @@ public final class SSL {
 			NoSuchAlgorithmException, CertificateException, IOException {
 		FileInputStream fis = null;
 		try {
-			KeyStore keyStore = KeyStore.getInstance("JKS");
 			fis = new FileInputStream(keyStorePath);
-			keyStore.load(fis, keyStorePass != null ? keyStorePass.toCharArray() : null);
-			return keyStore;
+			return loadKeyStore(fis, keyStorePass);
 		} finally {
 			if (fis != null) {
 				fis.close();
 			}
 		}
 	}
+
+	private static KeyStore loadKeyStore(InputStream data, String keyStorePass) throws KeyStoreException,
+			NoSuchAlgorithmException, CertificateException, IOException {
+		KeyStore keyStore = KeyStore.getInstance("JKS");
+		keyStore.load(data, keyStorePass != null ? keyStorePass.toCharArray() : null);
+		return keyStore;
+	}
 }
@@ -0,0 +1,482 @@
+package ru.lehvolk.toolkit.security.http;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+
+import ru.lehvolk.toolkit.security.CryptoException;
+
+/**
+ * Thread-safe cache of {@link SSLContext} shared by equal configurations.<br>
+ * Contexts are cached by content of {@link SSLConfiguration}, so clients with the same stores share one context and
+ * its TLS session cache. Store files are watched with {@link WatchService} by daemon thread, context is removed only
+ * when content of its store file is changed, next request builds it again. Stores reached through symbolic links
+ * are not watched, their modification time and size are checked on every request. Contexts are built once even if
+ * requested concurrently.
+ */
+public class SSLContextCache {
+
+	private static SSLContextCache defaultCache;
+
+	/**
+	 * Content of configuration affecting built context
+	 */
+	private static final class ConfigKey {
+
+		private final String keyStorePath;
+		private final String keyStorePassword;
+		private final String forcedAlias;
+		private final boolean checkHostTrusted;
+		private final String trustStorePath;
+		private final String trustStorePassword;
+
+		ConfigKey(SSLConfiguration conf) {
+			if (SSL.hasKeyStore(conf)) {
+				keyStorePath = normalize(conf.getKeyStorePath());
+				keyStorePassword = conf.getKeyStorePassword();
+				forcedAlias = conf.getForcedAlias();
+			} else {
+				keyStorePath = null;
+				keyStorePassword = null;
+				forcedAlias = null;
+			}
+			checkHostTrusted = conf.getCheckHostTrusted();
+			if (SSL.hasTrustStore(conf)) {
+				trustStorePath = normalize(conf.getTrustStorePath());
+				trustStorePassword = conf.getTrustStorePassword();
+			} else {
+				trustStorePath = null;
+				trustStorePassword = null;
+			}
+		}
+
+		SSLConfiguration toConfiguration() {
+			SSLConfiguration conf = new SSLConfiguration();
+			conf.setKeyStorePath(keyStorePath);
+			conf.setKeyStorePassword(keyStorePassword);
+			conf.setForcedAlias(forcedAlias);
+			conf.setCheckHostTrusted(checkHostTrusted);
+			conf.setTrustStorePath(trustStorePath);
+			conf.setTrustStorePassword(trustStorePassword);
+			return conf;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = checkHostTrusted ? 1 : 0;
+			for (String s : new String[] {keyStorePath, keyStorePassword, forcedAlias, trustStorePath,
+					trustStorePassword}) {
+				h = h * 31 + (s == null ? 0 : s.hashCode());
+			}
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ConfigKey)) {
+				return false;
+			}
+			ConfigKey other = (ConfigKey) obj;
+			return checkHostTrusted == other.checkHostTrusted && eq(keyStorePath, other.keyStorePath)
+					&& eq(keyStorePassword, other.keyStorePassword) && eq(forcedAlias, other.forcedAlias)
+					&& eq(trustStorePath, other.trustStorePath) && eq(trustStorePassword, other.trustStorePassword);
+		}
+
+		private static boolean eq(String s1, String s2) {
+			return s1 == null ? s2 == null : s1.equals(s2);
+		}
+
+		private static String normalize(String path) {
+			return Paths.get(path).toAbsolutePath().normalize().toString();
+		}
+	}
+
+	/**
+	 * Store file with digest of content used by context
+	 */
+	private static final class StoreFile {
+
+		private final Path path;
+		private final byte[] digest;
+		private final long lastModified;
+		private final long length;
+		private final boolean watched;
+
+		StoreFile(Path path, byte[] data, long lastModified, boolean watched) {
+			this.path = path;
+			this.lastModified = lastModified;
+			this.watched = watched;
+			length = data.length;
+			digest = digest(data);
+		}
+
+		/**
+		 * @param checkContent - true to compare content even if file looks not modified
+		 * @return true if file has the same content
+		 */
+		boolean isCurrent(boolean checkContent) {
+			try {
+				if (!checkContent && Files.getLastModifiedTime(path).toMillis() == lastModified
+						&& Files.size(path) == length) {
+					return true;
+				}
+				return MessageDigest.isEqual(digest, digest(Files.readAllBytes(path)));
+			} catch (IOException e) {
+				// removed or unreadable store, context is built again when file appears
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Built context with its store files
+	 */
+	private static final class CachedContext {
+
+		private final SSLContext context;
+		private final List<StoreFile> files;
+		private final long version;
+
+		CachedContext(SSLContext context, List<StoreFile> files, long version) {
+			this.context = context;
+			this.files = files;
+			this.version = version;
+		}
+
+		/**
+		 * @param changed - changed file, null to check all files
+		 * @param checkContent - true to compare content even if file looks not modified
+		 * @return true if files have the same content
+		 */
+		boolean isCurrent(Path changed, boolean checkContent) {
+			for (StoreFile file : files) {
+				if ((changed == null || changed.equals(file.path)) && !file.isCurrent(checkContent)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		boolean isWatched() {
+			for (StoreFile file : files) {
+				if (!file.watched) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private final ConcurrentMap<ConfigKey, Future<CachedContext>> contexts =
+			new ConcurrentHashMap<ConfigKey, Future<CachedContext>>();
+	private final Map<Path, WatchKey> directories = new ConcurrentHashMap<Path, WatchKey>();
+	// count of received file events, context loaded during event is checked again
+	private final AtomicLong events = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong reloads = new AtomicLong();
+	private WatchService watchService;
+	private boolean closed;
+
+	/**
+	 * @return shared cache
+	 */
+	public static synchronized SSLContextCache getDefault() {
+		if (defaultCache == null) {
+			defaultCache = new SSLContextCache();
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Returns cached context of configuration or builds it
+	 * @param conf - {@link SSLConfiguration}, its later changes don't affect returned context
+	 * @return shared {@link SSLContext}
+	 * @throws CryptoException if context can't be built
+	 */
+	public SSLContext getContext(SSLConfiguration conf) throws CryptoException {
+		final ConfigKey key = new ConfigKey(conf);
+		Future<CachedContext> future = contexts.get(key);
+		boolean loaded = false;
+		if (future == null) {
+			FutureTask<CachedContext> task = new FutureTask<CachedContext>(new Callable<CachedContext>() {
+
+				@Override
+				public CachedContext call() throws Exception {
+					return load(key);
+				}
+			});
+			future = contexts.putIfAbsent(key, task);
+			if (future == null) {
+				future = task;
+				task.run();
+				loaded = true;
+			}
+		}
+
+		CachedContext cached;
+		try {
+			cached = future.get();
+		} catch (ExecutionException e) {
+			contexts.remove(key, future);
+			if (e.getCause() instanceof CryptoException) {
+				throw (CryptoException) e.getCause();
+			}
+			throw new CryptoException("Can't create SSLContext", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CryptoException("Waiting for SSLContext interrupted", e);
+		}
+
+		boolean current;
+		if (loaded) {
+			current = cached.version == events.get() || cached.isCurrent(null, true);
+		} else {
+			current = cached.isWatched() || cached.isCurrent(null, false);
+		}
+		if (!current) {
+			contexts.remove(key, future);
+			reloads.incrementAndGet();
+			return getContext(conf);
+		}
+		if (loaded) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return cached.context;
+	}
+
+	private CachedContext load(ConfigKey key) throws CryptoException {
+		long version = events.get();
+		List<StoreFile> files = new ArrayList<StoreFile>(2);
+		byte[] keyStore = null;
+		byte[] trustStore = null;
+		try {
+			if (key.keyStorePath != null) {
+				keyStore = read(Paths.get(key.keyStorePath), files);
+			}
+			if (key.trustStorePath != null) {
+				trustStore = read(Paths.get(key.trustStorePath), files);
+			}
+		} catch (IOException e) {
+			throw new CryptoException("Can't read store of SSLContext", e);
+		}
+		return new CachedContext(SSL.createSSLContext(key.toConfiguration(), keyStore, trustStore), files, version);
+	}
+
+	private byte[] read(Path path, List<StoreFile> files) throws IOException {
+		// store reached through symbolic links (e.g. swapped "..data" link of mounted secret) is replaced without
+		// events for its path, such store is not watched and is checked on every request
+		boolean watched = path.toRealPath().equals(path) && watch(path.getParent());
+		// directory is registered and state is taken before reading, so no change after reading is missed
+		long lastModified = Files.getLastModifiedTime(path).toMillis();
+		byte[] data = Files.readAllBytes(path);
+		files.add(new StoreFile(path, data, lastModified, watched));
+		return data;
+	}
+
+	private synchronized boolean watch(Path dir) {
+		if (closed || dir == null) {
+			return false;
+		}
+		if (directories.containsKey(dir)) {
+			return true;
+		}
+		try {
+			if (watchService == null) {
+				watchService = FileSystems.getDefault().newWatchService();
+				Thread watcher = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						processEvents();
+					}
+				}, "ssl-context-watcher");
+				watcher.setDaemon(true);
+				watcher.start();
+			}
+			directories.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+			return true;
+		} catch (IOException e) {
+			// files of directory are checked on every request
+			return false;
+		} catch (UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	private void processEvents() {
+		WatchService service;
+		synchronized (this) {
+			service = watchService;
+		}
+		try {
+			while (true) {
+				WatchKey watchKey = service.take();
+				Path dir = (Path) watchKey.watchable();
+				Set<Path> changed = new HashSet<Path>();
+				boolean overflow = false;
+				for (WatchEvent<?> event : watchKey.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						overflow = true;
+					} else {
+						changed.add(dir.resolve((Path) event.context()));
+					}
+				}
+				events.incrementAndGet();
+				if (!watchKey.reset()) {
+					// directory is removed, its files are checked on request
+					directories.remove(dir);
+					overflow = true;
+				}
+				if (overflow) {
+					checkDirectory(dir);
+				} else {
+					for (Path path : changed) {
+						check(path);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			// cache is closed
+		}
+	}
+
+	private void check(Path changed) {
+		for (Map.Entry<ConfigKey, Future<CachedContext>> entry : contexts.entrySet()) {
+			CachedContext cached = completed(entry.getValue());
+			if (cached != null && !cached.isCurrent(changed, true)) {
+				if (contexts.remove(entry.getKey(), entry.getValue())) {
+					reloads.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	private void checkDirectory(Path dir) {
+		for (Map.Entry<ConfigKey, Future<CachedContext>> entry : contexts.entrySet()) {
+			CachedContext cached = completed(entry.getValue());
+			if (cached == null) {
+				continue;
+			}
+			for (StoreFile file : cached.files) {
+				if (dir.equals(file.path.getParent()) && !file.isCurrent(true)) {
+					if (contexts.remove(entry.getKey(), entry.getValue())) {
+						reloads.incrementAndGet();
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	private static CachedContext completed(Future<CachedContext> future) {
+		if (!future.isDone()) {
+			// context being loaded is checked by its loader
+			return null;
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private static byte[] digest(byte[] data) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(data);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Removes context of given configuration, it will be built again on next request
+	 * @param conf - {@link SSLConfiguration}
+	 */
+	public void invalidate(SSLConfiguration conf) {
+		contexts.remove(new ConfigKey(conf));
+	}
+
+	/**
+	 * Removes all cached contexts
+	 */
+	public void clear() {
+		contexts.clear();
+	}
+
+	/**
+	 * Stops watching of store files and removes cached contexts, cache still builds contexts but checks files on every
+	 * request
+	 */
+	public synchronized void close() {
+		closed = true;
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				// watcher thread stops anyway
+			}
+		}
+		directories.clear();
+		contexts.clear();
+	}
+
+	/**
+	 * @return count of cached contexts
+	 */
+	public int size() {
+		return contexts.size();
+	}
+
+	/**
+	 * @return count of requests served from cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return count of requests built new context
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return count of contexts removed because their store files were changed
+	 */
+	public long getReloads() {
+		return reloads.get();
+	}
+}
@@ -0,0 +1,91 @@
+package ru.lehvolk.toolkit.security;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Tests of hex and Base64 codecs of {@link Crypto}
+ */
+public class TestCodecs extends TestCase {
+
+	private final Random random = new Random(13);
+
+	public void testBase64RoundTrip() {
+		for (int size = 0; size < 100; size++) {
+			byte[] data = bytes(size);
+			String encoded = Crypto.toBase64(data);
+			assertEquals(Base64.encodeBase64String(data).trim(), encoded);
+			assertEquals(Crypto.base64Length(size), encoded.length());
+			assertTrue(Arrays.equals(data, Crypto.fromBase64(encoded)));
+		}
+	}
+
+	public void testBase64ToArrays() throws Exception {
+		byte[] data = bytes(50);
+		char[] chars = new char[Crypto.base64Length(40) + 3];
+		int len = Crypto.toBase64(data, 5, 40, chars, 3);
+		assertEquals(Crypto.base64Length(40), len);
+
+		byte[] decoded = new byte[45];
+		int count = Crypto.fromBase64(CharBuffer.wrap(chars, 3, len), decoded, 5);
+		assertEquals(40, count);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, 5, 45), Arrays.copyOfRange(decoded, 5, 45)));
+	}
+
+	public void testBase64ToCharBuffer() {
+		byte[] data = bytes(31);
+		CharBuffer out = CharBuffer.allocate(Crypto.base64Length(data.length));
+		Crypto.toBase64(data, out);
+		out.flip();
+		assertEquals(Crypto.toBase64(data), out.toString());
+	}
+
+	public void testBase64Null() {
+		assertNull(Crypto.toBase64(null));
+	}
+
+	public void testHexRoundTrip() throws Exception {
+		for (int size = 0; size < 70; size++) {
+			byte[] data = bytes(size);
+			String encoded = Crypto.toHex(data);
+			assertEquals(Hex.encodeHexString(data), encoded);
+			assertTrue(Arrays.equals(data, Crypto.fromHex(encoded)));
+			assertTrue(Arrays.equals(data, Crypto.fromHex(encoded.toUpperCase())));
+		}
+	}
+
+	public void testHexToArrays() throws Exception {
+		byte[] data = bytes(20);
+		char[] chars = new char[30];
+		assertEquals(20, Crypto.toHex(data, 5, 10, chars, 10));
+
+		byte[] decoded = new byte[12];
+		assertEquals(10, Crypto.fromHex(CharBuffer.wrap(chars, 10, 20), decoded, 2));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, 5, 15), Arrays.copyOfRange(decoded, 2, 12)));
+	}
+
+	public void testHexNull() throws Exception {
+		assertNull(Crypto.fromHex((String) null));
+	}
+
+	public void testMalformedHex() {
+		try {
+			Crypto.fromHex("0g");
+			fail("Malformed hex must be rejected");
+		} catch (CryptoException e) {
+			// expected
+		}
+	}
+
+	private byte[] bytes(int size) {
+		byte[] data = new byte[size];
+		random.nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,93 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of in-memory and stream encryption of {@link Crypto}
+ */
+public class TestCrypto extends TestCase {
+
+	private final Random random = new Random(14);
+
+	public void testCbcRoundTrip() throws Exception {
+		for (KeyType type : KeyType.values()) {
+			roundTrip(Crypto.generateRawKey(type, CipherMode.CBC));
+		}
+	}
+
+	public void testGcmRoundTrip() throws Exception {
+		roundTrip(Crypto.generateRawKey(KeyType.AES, CipherMode.GCM));
+	}
+
+	public void testStreamMatchesArray() throws Exception {
+		RawKeyPackage key = Crypto.generateRawKey(KeyType.AES);
+		byte[] data = bytes(100000);
+		assertTrue(Arrays.equals(Crypto.encrypt(data, key), process(data, key, Cipher.ENCRYPT_MODE)));
+	}
+
+	public void testGcmCorruptedTagFails() throws Exception {
+		RawKeyPackage key = Crypto.generateRawKey(KeyType.AES, CipherMode.GCM);
+		byte[] encrypted = Crypto.encrypt(bytes(1000), key);
+		encrypted[encrypted.length - 1] ^= 1;
+		try {
+			Crypto.decrypt(encrypted, key);
+			fail("Corrupted tag must be rejected");
+		} catch (CryptoException e) {
+			// expected
+		}
+		try {
+			process(encrypted, key, Cipher.DECRYPT_MODE);
+			fail("Corrupted tag must be rejected by stream");
+		} catch (CryptoException e) {
+			// expected
+		}
+	}
+
+	public void testTruncatedCbcStreamFails() throws Exception {
+		RawKeyPackage key = Crypto.generateRawKey(KeyType.AES);
+		byte[] encrypted = process(bytes(1000), key, Cipher.ENCRYPT_MODE);
+		try {
+			process(Arrays.copyOf(encrypted, encrypted.length - 1), key, Cipher.DECRYPT_MODE);
+			fail("Incomplete last block must be rejected by stream");
+		} catch (CryptoException e) {
+			// expected
+		}
+	}
+
+	public void testGeneratedIvLength() throws Exception {
+		for (KeyType type : KeyType.values()) {
+			assertEquals(type.getIvSize() / 8, Crypto.generateRawKey(type).getIv().length);
+		}
+		assertEquals(16, Crypto.generateRawKey(KeyType.AES).getIv().length);
+		assertEquals(8, Crypto.generateRawKey(KeyType.TDES).getIv().length);
+	}
+
+	private void roundTrip(RawKeyPackage key) throws Exception {
+		for (int size : new int[] {0, 1, 15, 16, 17, 1000, 70000}) {
+			byte[] data = bytes(size);
+			byte[] encrypted = Crypto.encrypt(data, key);
+			assertTrue(key.getType() + " size " + size, Arrays.equals(data, Crypto.decrypt(encrypted, key)));
+			assertTrue(key.getType() + " stream size " + size,
+					Arrays.equals(data, process(process(data, key, Cipher.ENCRYPT_MODE), key, Cipher.DECRYPT_MODE)));
+		}
+	}
+
+	private static byte[] process(byte[] data, RawKeyPackage key, int mode) throws CryptoException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Crypto.processStream(new ByteArrayInputStream(data), out, key, mode);
+		return out.toByteArray();
+	}
+
+	private byte[] bytes(int size) {
+		byte[] data = new byte[size];
+		random.nextBytes(data);
+		return data;
+	}
+}
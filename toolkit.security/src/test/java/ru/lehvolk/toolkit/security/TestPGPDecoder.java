@@ -0,0 +1,135 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPKeyRingGenerator;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPPublicKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+
+/**
+ * Tests of {@link PGPDecoder} with key rings of master key and encryption subkey, as generated by GnuPG
+ */
+public class TestPGPDecoder extends TestCase {
+
+	static {
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	private static final String PASS = "secret";
+
+	private static byte[] publicRing;
+	private static byte[] secretRing;
+	private static byte[] otherSecretRing;
+
+	private final Random random = new Random(20);
+
+	@Override
+	protected void setUp() throws Exception {
+		if (publicRing == null) {
+			PGPKeyRingGenerator generator = generator("recipient");
+			publicRing = generator.generatePublicKeyRing().getEncoded();
+			secretRing = generator.generateSecretKeyRing().getEncoded();
+			otherSecretRing = generator("other").generateSecretKeyRing().getEncoded();
+		}
+	}
+
+	public void testDecryptsDataEncryptedForSubkey() throws Exception {
+		PGPPublicKey subkey = subkey();
+		assertFalse(subkey.isMasterKey());
+		byte[] data = bytes(100000);
+		byte[] encrypted = encrypt(data, new PGPKeyPackage(subkey, null, null), true);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PGPDecoder.Result result = new PGPDecoder().decrypt(out, new ByteArrayInputStream(encrypted),
+				new ByteArrayInputStream(secretRing), PASS, new ByteArrayInputStream(publicRing));
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+		assertTrue(result.isVerified());
+		assertEquals("data.bin", result.getFileName());
+	}
+
+	public void testDecryptsDataEncryptedForMasterKey() throws Exception {
+		byte[] data = bytes(1000);
+		PGPKeyPackage keys = PGPKeyPackage.read(new ByteArrayInputStream(publicRing), null, null);
+		assertTrue(keys.getEncryptionKey().isMasterKey());
+		byte[] encrypted = encrypt(data, keys, false);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PGPDecoder().decrypt(out, new ByteArrayInputStream(encrypted), new ByteArrayInputStream(secretRing),
+				PASS, null);
+		assertTrue(Arrays.equals(data, out.toByteArray()));
+	}
+
+	public void testWrongPasswordFails() throws Exception {
+		byte[] encrypted = encrypt(bytes(100), new PGPKeyPackage(subkey(), null, null), false);
+		try {
+			new PGPDecoder().decrypt(new ByteArrayOutputStream(), new ByteArrayInputStream(encrypted),
+					new ByteArrayInputStream(secretRing), PASS + "x", null);
+			fail("Wrong password must be rejected");
+		} catch (CryptoException e) {
+			// expected
+		}
+	}
+
+	public void testOtherRecipientFails() throws Exception {
+		byte[] encrypted = encrypt(bytes(100), new PGPKeyPackage(subkey(), null, null), false);
+		try {
+			new PGPDecoder().decrypt(new ByteArrayOutputStream(), new ByteArrayInputStream(encrypted),
+					new ByteArrayInputStream(otherSecretRing), PASS, null);
+			fail("Data encrypted for other recipient must be rejected");
+		} catch (CryptoException e) {
+			assertEquals("Data is not encrypted for decryption key", e.getMessage());
+		}
+	}
+
+	private byte[] encrypt(byte[] data, PGPKeyPackage recipient, boolean sign) throws Exception {
+		PGPKeyPackage keys = recipient;
+		if (sign) {
+			PGPKeyPackage signer = PGPKeyPackage.read(new ByteArrayInputStream(publicRing),
+					new ByteArrayInputStream(secretRing), PASS);
+			keys = new PGPKeyPackage(recipient.getEncryptionKey(), signer.getSignatureKey(),
+					signer.getSignaturePrivateKey());
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new PGPEncoder().encrypt(out, new ByteArrayInputStream(data), "data.bin", keys);
+		return out.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static PGPPublicKey subkey() throws Exception {
+		Iterator<PGPPublicKey> keys = new PGPPublicKeyRing(publicRing).getPublicKeys();
+		keys.next();
+		return keys.next();
+	}
+
+	private static PGPKeyRingGenerator generator(String id) throws Exception {
+		KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA", "BC");
+		rsa.initialize(1024);
+		Date now = new Date();
+		PGPKeyPair master = new PGPKeyPair(PGPPublicKey.RSA_GENERAL, rsa.generateKeyPair(), now);
+		PGPKeyPair subkey = new PGPKeyPair(PGPPublicKey.RSA_GENERAL, rsa.generateKeyPair(), now);
+		PGPKeyRingGenerator generator = new PGPKeyRingGenerator(PGPSignature.POSITIVE_CERTIFICATION, master, id,
+				SymmetricKeyAlgorithmTags.AES_256, PASS.toCharArray(), true, null, null, new SecureRandom(), "BC");
+		generator.addSubKey(subkey);
+		return generator;
+	}
+
+	private byte[] bytes(int size) {
+		byte[] data = new byte[size];
+		random.nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,42 @@
+package ru.lehvolk.toolkit.security;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link ProcessKeyCache}
+ */
+public class TestProcessKeyCache extends TestCase {
+
+	public void testSameInstanceForPair() throws Exception {
+		ProcessKeyCache cache = new ProcessKeyCache(10);
+		SecretKeyPackage k1 = Crypto.generateKey(KeyType.AES);
+		SecretKeyPackage k2 = Crypto.generateKey(KeyType.AES);
+		RawKeyPackage key = cache.get(k1, k2);
+		assertSame(key, cache.get(k1, k2));
+		assertTrue(Arrays.equals(Crypto.makeProcessKey(k1, k2).getKey(), key.getKey()));
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testSharedKeyCantBeModified() throws Exception {
+		ProcessKeyCache cache = new ProcessKeyCache(10);
+		SecretKeyPackage k1 = Crypto.generateKey(KeyType.AES);
+		SecretKeyPackage k2 = Crypto.generateKey(KeyType.AES);
+		RawKeyPackage key = cache.get(k1, k2);
+		byte[] encrypted = Crypto.encrypt(new byte[100], key);
+		Arrays.fill(key.getKey(), (byte) 0);
+		Arrays.fill(key.getIv(), (byte) 1);
+		RawKeyPackage shared = cache.get(k1, k2);
+		assertTrue(Arrays.equals(Crypto.makeProcessKey(k1, k2).getKey(), shared.getKey()));
+		assertTrue(Arrays.equals(new byte[100], Crypto.decrypt(encrypted, shared)));
+	}
+
+	public void testCapacityLimited() throws Exception {
+		ProcessKeyCache cache = new ProcessKeyCache(20);
+		for (int i = 0; i < 200; i++) {
+			cache.get(Crypto.generateKey(KeyType.AES), Crypto.generateKey(KeyType.AES));
+		}
+		assertTrue(cache.size() <= 20);
+	}
+}
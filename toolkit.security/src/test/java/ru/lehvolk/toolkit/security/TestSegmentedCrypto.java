@@ -0,0 +1,206 @@
+package ru.lehvolk.toolkit.security;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of {@link SegmentedCrypto} container
+ */
+public class TestSegmentedCrypto extends TestCase {
+
+	private static final int SEGMENT_SIZE = 1000;
+	private static final int HEADER_SIZE = 33;
+	private static final int TAG_SIZE = 16;
+
+	private final Random random = new Random(20);
+	private SegmentedCrypto crypto;
+	private RawKeyPackage key;
+	private File source;
+	private File encrypted;
+	private File decrypted;
+
+	@Override
+	protected void setUp() throws Exception {
+		crypto = new SegmentedCrypto();
+		crypto.setSegmentSize(SEGMENT_SIZE);
+		key = Crypto.generateRawKey(KeyType.AES);
+		source = File.createTempFile("segmented", ".bin");
+		encrypted = File.createTempFile("segmented", ".enc");
+		decrypted = File.createTempFile("segmented", ".dec");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		source.delete();
+		encrypted.delete();
+		decrypted.delete();
+	}
+
+	public void testRoundTrip() throws Exception {
+		for (int size : new int[] {0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE, SEGMENT_SIZE + 1, 10 * SEGMENT_SIZE + 7}) {
+			byte[] data = write(size);
+			crypto.encryptFile(source, encrypted, key);
+			assertEquals(HEADER_SIZE + size + crypto.getSegmentCount(encrypted) * TAG_SIZE, encrypted.length());
+			crypto.decryptFile(encrypted, decrypted, key);
+			assertTrue("size " + size, Arrays.equals(data, read(decrypted)));
+		}
+	}
+
+	public void testDecryptSegment() throws Exception {
+		byte[] data = write(3 * SEGMENT_SIZE + 10);
+		crypto.encryptFile(source, encrypted, key);
+		assertEquals(4, crypto.getSegmentCount(encrypted));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, SEGMENT_SIZE, 2 * SEGMENT_SIZE),
+				crypto.decryptSegment(encrypted, key, 1)));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(data, 3 * SEGMENT_SIZE, data.length),
+				crypto.decryptSegment(encrypted, key, 3)));
+	}
+
+	public void testSameDataGetsDifferentCiphertext() throws Exception {
+		write(2 * SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		byte[] first = read(encrypted);
+		crypto.encryptFile(source, encrypted, key);
+		byte[] second = read(encrypted);
+		assertFalse(Arrays.equals(Arrays.copyOfRange(first, HEADER_SIZE, first.length),
+				Arrays.copyOfRange(second, HEADER_SIZE, second.length)));
+	}
+
+	public void testTamperedSegmentFails() throws Exception {
+		write(3 * SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		flip(HEADER_SIZE + SEGMENT_SIZE + TAG_SIZE + 5);
+		assertDecryptFails();
+	}
+
+	public void testTamperedSaltFails() throws Exception {
+		write(2 * SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		flip(HEADER_SIZE - 1);
+		assertDecryptFails();
+	}
+
+	public void testSwappedSegmentsFail() throws Exception {
+		write(2 * SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		byte[] data = read(encrypted);
+		int len = SEGMENT_SIZE + TAG_SIZE;
+		byte[] swapped = data.clone();
+		System.arraycopy(data, HEADER_SIZE, swapped, HEADER_SIZE + len, len);
+		System.arraycopy(data, HEADER_SIZE + len, swapped, HEADER_SIZE, len);
+		writeTo(encrypted, swapped);
+		assertDecryptFails();
+	}
+
+	public void testTruncatedContainerFails() throws Exception {
+		write(3 * SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		RandomAccessFile file = new RandomAccessFile(encrypted, "rw");
+		try {
+			file.setLength(file.length() - SEGMENT_SIZE - TAG_SIZE);
+		} finally {
+			file.close();
+		}
+		assertDecryptFails();
+	}
+
+	public void testWrongKeyFails() throws Exception {
+		write(SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		key = Crypto.generateRawKey(KeyType.AES);
+		assertDecryptFails();
+	}
+
+	public void testPreviousVersionRejected() throws Exception {
+		write(SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		RandomAccessFile file = new RandomAccessFile(encrypted, "rw");
+		try {
+			file.seek(4);
+			file.write(1);
+		} finally {
+			file.close();
+		}
+		assertDecryptFails();
+	}
+
+	public void testSegmentSizeLimited() {
+		try {
+			crypto.setSegmentSize(Integer.MAX_VALUE - 8);
+			fail("Segment size overflowing buffers must be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testHugeSegmentSizeHeaderRejected() throws Exception {
+		write(SEGMENT_SIZE);
+		crypto.encryptFile(source, encrypted, key);
+		RandomAccessFile file = new RandomAccessFile(encrypted, "rw");
+		try {
+			file.seek(5);
+			file.writeInt(Integer.MAX_VALUE - 8);
+		} finally {
+			file.close();
+		}
+		assertDecryptFails();
+	}
+
+	private void assertDecryptFails() {
+		try {
+			crypto.decryptFile(encrypted, decrypted, key);
+			fail("Decryption of corrupted container must fail");
+		} catch (CryptoException e) {
+			// expected
+		}
+	}
+
+	private byte[] write(int size) throws IOException {
+		byte[] data = new byte[size];
+		random.nextBytes(data);
+		writeTo(source, data);
+		return data;
+	}
+
+	private void flip(long position) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(encrypted, "rw");
+		try {
+			file.seek(position);
+			int b = file.read();
+			file.seek(position);
+			file.write(b ^ 1);
+		} finally {
+			file.close();
+		}
+	}
+
+	private static void writeTo(File file, byte[] data) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static byte[] read(File file) throws IOException {
+		byte[] data = new byte[(int) file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int pos = 0;
+			while (pos < data.length) {
+				pos += in.read(data, pos, data.length - pos);
+			}
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+}
@@ -6,7 +6,7 @@ import javax.net.ssl.SSLSocketFactory;
 import org.apache.commons.pool.PoolableObjectFactory;
 
 import ru.lehvolk.toolkit.security.CryptoException;
-import ru.lehvolk.toolkit.security.http.SSL;
+import ru.lehvolk.toolkit.security.http.SSLContextCache;
 
 /**
  * ports factory implementation based on ws port creator
@@ -65,13 +65,13 @@ public class PortsFactory<T> implements PoolableObjectFactory<T> {
 	}
 
 	/**
-	 * apply configuration to factory
+	 * apply configuration to factory, SSL context is shared with other factories of the same SSL configuration
 	 */
 	public void init(WSClientConfiguration configuration) {
 		this.configuration = configuration;
 		if (configuration.getSslConfiguration() != null && configuration.getSslConfiguration().getEnabled()) {
 			try {
-				SSLContext ctx = SSL.createSSLContext(configuration.getSslConfiguration());
+				SSLContext ctx = SSLContextCache.getDefault().getContext(configuration.getSslConfiguration());
 				sslFactory = ctx.getSocketFactory();
 			} catch (CryptoException e) {
 				throw new IllegalArgumentException("Error ssl initialization", e);